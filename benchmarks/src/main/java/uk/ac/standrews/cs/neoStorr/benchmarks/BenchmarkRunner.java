@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so that results can be compared across releases.
+ * <p>
+ * Usage: BenchmarkRunner [result_file [benchmark_regex]]
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+    private static final String DEFAULT_BENCHMARKS = BenchmarkRunner.class.getPackage().getName() + ".*";
+
+    public static void main(final String[] args) throws RunnerException {
+
+        final String result_file = args.length > 0 ? args[0] : DEFAULT_RESULT_FILE;
+        final String benchmarks = args.length > 1 ? args[1] : DEFAULT_BENCHMARKS;
+
+        final Options options = new OptionsBuilder()
+                .include(benchmarks)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result_file)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks;
+
+import uk.ac.standrews.cs.neoStorr.benchmarks.records.JPORecord32;
+import uk.ac.standrews.cs.neoStorr.benchmarks.records.JPORecord8;
+import uk.ac.standrews.cs.neoStorr.benchmarks.records.StaticRecord32;
+import uk.ac.standrews.cs.neoStorr.benchmarks.records.StaticRecord8;
+import uk.ac.standrews.cs.neoStorr.impl.DynamicLXP;
+import uk.ac.standrews.cs.neoStorr.impl.LXP;
+
+/**
+ * The kinds of record measured by the benchmarks, each available with 8 or 32 fields.
+ */
+public enum RecordKind {
+
+    STATIC {
+        @Override
+        public Class<? extends LXP> getBucketType(final int field_count) {
+            return field_count == SMALL ? StaticRecord8.class : StaticRecord32.class;
+        }
+
+        @Override
+        public LXP newRecord(final int field_count, final long seed) {
+
+            final LXP record = field_count == SMALL ? new StaticRecord8() : new StaticRecord32();
+            setFields(record, field_count, seed);
+            return record;
+        }
+
+        @Override
+        public void modify(final LXP record, final long seed) {
+            record.put(FIELD_NAME_PREFIX + 0, "modified-" + seed);
+        }
+    },
+
+    DYNAMIC {
+        @Override
+        public Class<? extends LXP> getBucketType(final int field_count) {
+            return null; // stored in an untyped bucket
+        }
+
+        @Override
+        public LXP newRecord(final int field_count, final long seed) {
+
+            final LXP record = new DynamicLXP();
+            setFields(record, field_count, seed);
+            return record;
+        }
+
+        @Override
+        public void modify(final LXP record, final long seed) {
+            record.put(FIELD_NAME_PREFIX + 0, "modified-" + seed);
+        }
+    },
+
+    JPO {
+        @Override
+        public Class<? extends LXP> getBucketType(final int field_count) {
+            return field_count == SMALL ? JPORecord8.class : JPORecord32.class;
+        }
+
+        @Override
+        public LXP newRecord(final int field_count, final long seed) {
+            return field_count == SMALL ? new JPORecord8(seed) : new JPORecord32(seed);
+        }
+
+        @Override
+        public void modify(final LXP record, final long seed) {
+
+            if (record instanceof JPORecord8) ((JPORecord8) record).setFields(seed);
+            else ((JPORecord32) record).setFields(seed);
+        }
+    };
+
+    public static final int SMALL = 8;
+    public static final int LARGE = 32;
+
+    private static final String FIELD_NAME_PREFIX = "F";
+
+    /**
+     * @param field_count the number of fields in each record
+     * @return the type of the bucket holding records of this kind, or null for an untyped bucket
+     */
+    public abstract Class<? extends LXP> getBucketType(int field_count);
+
+    public abstract LXP newRecord(int field_count, long seed);
+
+    /**
+     * Changes the value of at least one field of a record of this kind.
+     */
+    public abstract void modify(LXP record, long seed);
+
+    private static void setFields(final LXP record, final int field_count, final long seed) {
+
+        for (int i = 0; i < field_count; i++) {
+
+            // Alternately strings and longs, as declared in the static record classes.
+            if (i % 2 == 0) record.put(FIELD_NAME_PREFIX + i, "value-" + seed);
+            else record.put(FIELD_NAME_PREFIX + i, seed);
+        }
+    }
+}
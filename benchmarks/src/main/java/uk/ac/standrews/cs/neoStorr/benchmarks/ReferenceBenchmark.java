@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import uk.ac.standrews.cs.neoStorr.impl.LXP;
+import uk.ac.standrews.cs.neoStorr.impl.LXPReference;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
+
+/**
+ * Measures dereferencing references read back from their serialised form, so that the referend is found through
+ * the repository and bucket rather than held by the reference.
+ */
+public class ReferenceBenchmark extends StoreBenchmark {
+
+    private String[] serialised_references;
+    private int next_reference = 0;
+
+    @Override
+    protected void setUpRecords() throws BucketException {
+
+        final LXP[] records = fill(bucket, RECORD_COUNT);
+
+        serialised_references = new String[records.length];
+        for (int i = 0; i < records.length; i++) {
+            try {
+                serialised_references[i] = records[i].getThisRef().toString();
+
+            } catch (final PersistentObjectException e) {
+                throw new BucketException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public LXP getReferend() throws BucketException, RepositoryException {
+
+        final String serialised = serialised_references[next_reference++ % serialised_references.length];
+        return new LXPReference<>(serialised).getReferend();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks;
+
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.openjdk.jmh.annotations.*;
+import uk.ac.standrews.cs.neoStorr.impl.LXP;
+import uk.ac.standrews.cs.neoStorr.impl.Store;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.interfaces.IRepository;
+import uk.ac.standrews.cs.neoStorr.interfaces.IStore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common state for the benchmarks: an in-process Neo4j database, as used by the unit tests, and a repository
+ * containing a bucket for the record kind and size being measured.
+ * Each trial runs in its own forked JVM, since the store is a singleton bound to the database started for the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class StoreBenchmark {
+
+    static final String REPOSITORY_NAME = "BENCHMARK_REPOSITORY";
+    static final String BUCKET_NAME = "BENCHMARK_BUCKET";
+
+    // Number of records placed in a bucket before reads are measured.
+    static final int RECORD_COUNT = 1000;
+
+    // The store is a singleton bound to the first database started, so each trial must run in its own forked JVM.
+    private static Neo4j neo4j_db;
+
+    @Param({"STATIC", "DYNAMIC", "JPO"})
+    public RecordKind kind;
+
+    @Param({"8", "32"})
+    public int field_count;
+
+    protected IStore store;
+    protected IRepository repository;
+    protected IBucket<LXP> bucket;
+
+    private long next_seed = 0;
+
+    @Setup(Level.Trial)
+    public void setUpStore() throws RepositoryException, BucketException {
+
+        startDatabase();
+        store = Store.getInstance();
+
+        repository = store.makeRepository(REPOSITORY_NAME);
+        bucket = makeBucket(BUCKET_NAME);
+
+        setUpRecords();
+    }
+
+    /**
+     * Adds any records needed by a benchmark, after the bucket has been created.
+     */
+    protected void setUpRecords() throws BucketException {
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownStore() throws RepositoryException {
+
+        store.deleteRepository(REPOSITORY_NAME);
+        stopDatabase();
+    }
+
+    protected IBucket<LXP> makeBucket(final String bucket_name) throws RepositoryException, BucketException {
+
+        final Class<? extends LXP> bucket_type = kind.getBucketType(field_count);
+
+        //noinspection unchecked
+        return bucket_type == null ? repository.makeBucket(bucket_name) : (IBucket<LXP>) repository.makeBucket(bucket_name, bucket_type);
+    }
+
+    protected LXP newRecord() {
+
+        return kind.newRecord(field_count, next_seed++);
+    }
+
+    protected long nextSeed() {
+
+        return next_seed++;
+    }
+
+    /**
+     * Adds new records to the given bucket.
+     *
+     * @return the records added
+     */
+    protected LXP[] fill(final IBucket<LXP> bucket, final int count) throws BucketException {
+
+        final LXP[] records = new LXP[count];
+
+        for (int i = 0; i < count; i++) {
+            records[i] = newRecord();
+            bucket.makePersistent(records[i]);
+        }
+        return records;
+    }
+
+    private static synchronized void startDatabase() {
+
+        neo4j_db = Neo4jBuilders.newInProcessBuilder().build();
+
+        // Sets override for neo-storr.neoDbCypherBridge
+        System.setProperty("NeoDBTestURL", neo4j_db.boltURI().toString());
+    }
+
+    private static synchronized void stopDatabase() {
+
+        neo4j_db.close();
+        System.clearProperty("NeoDBTestURL");
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks.records;
+
+import uk.ac.standrews.cs.neoStorr.impl.JPO;
+import uk.ac.standrews.cs.neoStorr.impl.JPOMetaData;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.types.JPO_FIELD;
+
+import java.util.Map;
+
+/**
+ * A Java persistent object with 32 fields, alternately strings and longs.
+ */
+public class JPORecord32 extends JPO {
+
+    @JPO_FIELD
+    private String f0;
+
+    @JPO_FIELD
+    private long f1;
+
+    @JPO_FIELD
+    private String f2;
+
+    @JPO_FIELD
+    private long f3;
+
+    @JPO_FIELD
+    private String f4;
+
+    @JPO_FIELD
+    private long f5;
+
+    @JPO_FIELD
+    private String f6;
+
+    @JPO_FIELD
+    private long f7;
+
+    @JPO_FIELD
+    private String f8;
+
+    @JPO_FIELD
+    private long f9;
+
+    @JPO_FIELD
+    private String f10;
+
+    @JPO_FIELD
+    private long f11;
+
+    @JPO_FIELD
+    private String f12;
+
+    @JPO_FIELD
+    private long f13;
+
+    @JPO_FIELD
+    private String f14;
+
+    @JPO_FIELD
+    private long f15;
+
+    @JPO_FIELD
+    private String f16;
+
+    @JPO_FIELD
+    private long f17;
+
+    @JPO_FIELD
+    private String f18;
+
+    @JPO_FIELD
+    private long f19;
+
+    @JPO_FIELD
+    private String f20;
+
+    @JPO_FIELD
+    private long f21;
+
+    @JPO_FIELD
+    private String f22;
+
+    @JPO_FIELD
+    private long f23;
+
+    @JPO_FIELD
+    private String f24;
+
+    @JPO_FIELD
+    private long f25;
+
+    @JPO_FIELD
+    private String f26;
+
+    @JPO_FIELD
+    private long f27;
+
+    @JPO_FIELD
+    private String f28;
+
+    @JPO_FIELD
+    private long f29;
+
+    @JPO_FIELD
+    private String f30;
+
+    @JPO_FIELD
+    private long f31;
+
+    public JPORecord32() { // requirement for JPO
+    }
+
+    public JPORecord32(long id, Map map, IBucket bucket) throws PersistentObjectException { // a requirement for JPO
+        super(id, map, bucket);
+    }
+
+    public JPORecord32(final long seed) {
+
+        setFields(seed);
+    }
+
+    public void setFields(final long seed) {
+
+        final String value = "value-" + seed;
+
+        f0 = value;
+        f1 = seed;
+        f2 = value;
+        f3 = seed;
+        f4 = value;
+        f5 = seed;
+        f6 = value;
+        f7 = seed;
+        f8 = value;
+        f9 = seed;
+        f10 = value;
+        f11 = seed;
+        f12 = value;
+        f13 = seed;
+        f14 = value;
+        f15 = seed;
+        f16 = value;
+        f17 = seed;
+        f18 = value;
+        f19 = seed;
+        f20 = value;
+        f21 = seed;
+        f22 = value;
+        f23 = seed;
+        f24 = value;
+        f25 = seed;
+        f26 = value;
+        f27 = seed;
+        f28 = value;
+        f29 = seed;
+        f30 = value;
+        f31 = seed;
+    }
+
+    /* Storr stuff */
+
+    private static final JPOMetaData static_metadata;
+
+    @Override
+    public JPOMetaData getJPOMetaData() {
+        return static_metadata;
+    }
+
+    static {
+        try {
+            static_metadata = new JPOMetaData(JPORecord32.class, "JPORecord32");
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks.records;
+
+import uk.ac.standrews.cs.neoStorr.impl.JPO;
+import uk.ac.standrews.cs.neoStorr.impl.JPOMetaData;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.types.JPO_FIELD;
+
+import java.util.Map;
+
+/**
+ * A Java persistent object with 8 fields, alternately strings and longs.
+ */
+public class JPORecord8 extends JPO {
+
+    @JPO_FIELD
+    private String f0;
+
+    @JPO_FIELD
+    private long f1;
+
+    @JPO_FIELD
+    private String f2;
+
+    @JPO_FIELD
+    private long f3;
+
+    @JPO_FIELD
+    private String f4;
+
+    @JPO_FIELD
+    private long f5;
+
+    @JPO_FIELD
+    private String f6;
+
+    @JPO_FIELD
+    private long f7;
+
+    public JPORecord8() { // requirement for JPO
+    }
+
+    public JPORecord8(long id, Map map, IBucket bucket) throws PersistentObjectException { // a requirement for JPO
+        super(id, map, bucket);
+    }
+
+    public JPORecord8(final long seed) {
+
+        setFields(seed);
+    }
+
+    public void setFields(final long seed) {
+
+        final String value = "value-" + seed;
+
+        f0 = value;
+        f1 = seed;
+        f2 = value;
+        f3 = seed;
+        f4 = value;
+        f5 = seed;
+        f6 = value;
+        f7 = seed;
+    }
+
+    /* Storr stuff */
+
+    private static final JPOMetaData static_metadata;
+
+    @Override
+    public JPOMetaData getJPOMetaData() {
+        return static_metadata;
+    }
+
+    static {
+        try {
+            static_metadata = new JPOMetaData(JPORecord8.class, "JPORecord8");
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
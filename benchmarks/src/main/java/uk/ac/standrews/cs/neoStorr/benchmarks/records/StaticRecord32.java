@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks.records;
+
+import uk.ac.standrews.cs.neoStorr.impl.LXPMetaData;
+import uk.ac.standrews.cs.neoStorr.impl.StaticLXP;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.types.LXPBaseType;
+import uk.ac.standrews.cs.neoStorr.types.LXP_SCALAR;
+
+import java.util.Map;
+
+/**
+ * A static record with 32 fields, alternately strings and longs.
+ */
+public class StaticRecord32 extends StaticLXP {
+
+    private static final LXPMetaData static_metadata;
+
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F0;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F1;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F2;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F3;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F4;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F5;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F6;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F7;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F8;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F9;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F10;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F11;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F12;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F13;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F14;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F15;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F16;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F17;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F18;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F19;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F20;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F21;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F22;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F23;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F24;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F25;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F26;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F27;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F28;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F29;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F30;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F31;
+
+    public StaticRecord32() {
+    }
+
+    public StaticRecord32(long persistent_object_id, Map properties, IBucket bucket) throws PersistentObjectException {
+        super(persistent_object_id, properties, bucket);
+    }
+
+    @Override
+    public LXPMetaData getMetaData() {
+        return static_metadata;
+    }
+
+    static {
+        static_metadata = new LXPMetaData(StaticRecord32.class, StaticRecord32.class.getSimpleName());
+    }
+}
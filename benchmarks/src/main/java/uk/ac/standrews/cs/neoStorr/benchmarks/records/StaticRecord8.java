@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.benchmarks.records;
+
+import uk.ac.standrews.cs.neoStorr.impl.LXPMetaData;
+import uk.ac.standrews.cs.neoStorr.impl.StaticLXP;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.types.LXPBaseType;
+import uk.ac.standrews.cs.neoStorr.types.LXP_SCALAR;
+
+import java.util.Map;
+
+/**
+ * A static record with 8 fields, alternately strings and longs.
+ */
+public class StaticRecord8 extends StaticLXP {
+
+    private static final LXPMetaData static_metadata;
+
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F0;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F1;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F2;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F3;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F4;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F5;
+    @LXP_SCALAR(type = LXPBaseType.STRING)
+    public static int F6;
+    @LXP_SCALAR(type = LXPBaseType.LONG)
+    public static int F7;
+
+    public StaticRecord8() {
+    }
+
+    public StaticRecord8(long persistent_object_id, Map properties, IBucket bucket) throws PersistentObjectException {
+        super(persistent_object_id, properties, bucket);
+    }
+
+    @Override
+    public LXPMetaData getMetaData() {
+        return static_metadata;
+    }
+
+    static {
+        static_metadata = new LXPMetaData(StaticRecord8.class, StaticRecord8.class.getSimpleName());
+    }
+}
@@ -16,12 +16,16 @@
  */
 package uk.ac.standrews.cs.neoStorr.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.json.JSONWriter;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
 
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This is a Dynamic Labelled Cross Product (a tuple).
@@ -30,7 +34,12 @@ import java.util.Map;
  */
 public class DynamicLXP extends LXP {
 
-    final LXPMetaData metadata = new LXPMetaData();
+    private static final int MAX_SORTED_FIELD_SETS = 1000;
+
+    // Records loaded from a bucket mostly have one of a few sets of fields, so each set is only sorted once.
+    private static final Cache<Set<String>, String[]> sorted_field_names = CacheBuilder.newBuilder().maximumSize(MAX_SORTED_FIELD_SETS).build();
+
+    private DynamicShape metadata = DynamicShape.EMPTY;
 
     public DynamicLXP() {
         super();
@@ -43,7 +52,25 @@ public class DynamicLXP extends LXP {
     public DynamicLXP(final long persistent_object_id, Map<String,Object> properties, final IBucket bucket) throws PersistentObjectException {
 
         this(persistent_object_id, bucket);
-        initialiseProperties( properties );
+
+        // Added in name order, so that records loaded with the same fields share a shape whatever order they are returned in.
+        for (final String key : sortedFieldNames(properties.keySet())) {
+            initialiseProperty(key, properties.get(key));
+        }
+    }
+
+    private static String[] sortedFieldNames(final Set<String> field_names) {
+
+        String[] sorted = sorted_field_names.getIfPresent(field_names);
+
+        if (sorted == null) {
+            sorted = field_names.toArray(new String[0]);
+            Arrays.sort(sorted);
+
+            // Copied, since the key set passed in is a view that would keep the loaded record's values reachable.
+            sorted_field_names.put(Set.copyOf(field_names), sorted);
+        }
+        return sorted;
     }
 
     @Override
@@ -59,14 +86,10 @@ public class DynamicLXP extends LXP {
             throw new RuntimeException("null key");
         }
 
-        final Map<String, Integer> field_name_to_slot = metadata.getFieldNamesToSlotNumbers();
-        final Map<Integer, String> slot_to_fieldname = metadata.getSlotNumbersToFieldNames();
-
-        if (!field_name_to_slot.containsKey(key)) {
+        if (!metadata.containsLabel(key)) {
 
-            final int next_slot = findFirstFree();
-            field_name_to_slot.put(key, next_slot);
-            slot_to_fieldname.put(next_slot, key);
+            findFirstFree();
+            metadata = metadata.withField(key);
         }
     }
 
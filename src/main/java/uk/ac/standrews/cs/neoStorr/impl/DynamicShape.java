@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.impl;
+
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The field layout shared by all dynamic LXPs to which the same fields have been added in the same order.
+ * Shapes are immutable: adding a field to an LXP moves it to the shape reached by the transition on that field name.
+ * Transitions are held weakly, so shapes that no LXP uses any longer can be collected. Each shape holds its parent, so
+ * the shapes leading to one in use are kept and LXPs given the same fields in the same order still share a shape.
+ */
+final class DynamicShape extends LXPMetaData {
+
+    static final DynamicShape EMPTY = new DynamicShape(null, new String[0]);
+
+    private final DynamicShape parent;    // the shape without the last field, null for the empty shape.
+    private final String[] field_names;   // indexed by slot.
+    private final Map<String, DynamicShape> transitions = CacheBuilder.newBuilder().weakValues().<String, DynamicShape>build().asMap();
+
+    private DynamicShape(final DynamicShape parent, final String[] field_names) {
+
+        super(field_names);
+        this.parent = parent;
+        this.field_names = field_names;
+    }
+
+    /**
+     * @param field_name the name of a field not in this shape
+     * @return the shape with the given field added in the next slot
+     */
+    DynamicShape withField(final String field_name) {
+
+        return transitions.computeIfAbsent(field_name, name -> {
+
+            final String[] extended = Arrays.copyOf(field_names, field_names.length + 1);
+            extended[field_names.length] = name;
+            return new DynamicShape(this, extended);
+        });
+    }
+}
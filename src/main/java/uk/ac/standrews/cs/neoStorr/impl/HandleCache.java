@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.impl;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of store and repository handles keyed by name.
+ * A missing handle is loaded by one thread at a time, outside any lock on the cache, so loads of different names
+ * proceed in parallel; other threads asking for the same name wait for the load in progress.
+ */
+final class HandleCache<H> {
+
+    private final Map<String, H> handles = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<H>> loads = new ConcurrentHashMap<>();   // loads in progress.
+
+    @FunctionalInterface
+    interface Loader<H, E extends Exception> {
+
+        /**
+         * @return the handle, or null if there is none to cache
+         */
+        H load(String name) throws E;
+    }
+
+    H get(final String name) {
+        return handles.get(name);
+    }
+
+    boolean containsKey(final String name) {
+        return handles.containsKey(name);
+    }
+
+    void put(final String name, final H handle) {
+        handles.put(name, handle);
+    }
+
+    /**
+     * @return the handle already cached for the name, or null if the given handle was cached
+     */
+    H putIfAbsent(final String name, final H handle) {
+        return handles.putIfAbsent(name, handle);
+    }
+
+    /**
+     * Removes the handle for the name, after any load of it in progress, so that the load does not restore it.
+     *
+     * @return the handle removed, or null if there was none
+     */
+    H remove(final String name) {
+
+        final CompletableFuture<H> load = loads.get(name);
+        if (load != null) load.handle((handle, e) -> null).join();
+
+        return handles.remove(name);
+    }
+
+    /**
+     * @return the cached handle for the name, loading and caching it if there is none, or null if the loader finds none
+     */
+    <E extends Exception> H getOrLoad(final String name, final Loader<H, E> loader) throws E {
+
+        final H handle = handles.get(name);
+        if (handle != null) return handle;
+
+        final CompletableFuture<H> load = new CompletableFuture<>();
+        final CompletableFuture<H> load_in_progress = loads.putIfAbsent(name, load);
+        if (load_in_progress != null) return await(load_in_progress);
+
+        try {
+            H loaded = handles.get(name);   // may have been cached since the check above.
+
+            if (loaded == null) {
+                loaded = loader.load(name);
+                if (loaded != null) {
+                    final H cached = handles.putIfAbsent(name, loaded);
+                    if (cached != null) loaded = cached;
+                }
+            }
+
+            load.complete(loaded);
+            return loaded;
+
+        } catch (final Throwable t) {
+            load.completeExceptionally(t);
+            throw t;
+
+        } finally {
+            loads.remove(name, load);
+        }
+    }
+
+    /**
+     * Waits for a load made by another thread, throwing the exception it failed with, which the loader may throw.
+     */
+    @SuppressWarnings("unchecked")
+    private static <H, E extends Exception> H await(final CompletableFuture<H> load) throws E {
+
+        try {
+            return load.join();
+
+        } catch (final CompletionException e) {
+
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw (E) cause;
+        }
+    }
+}
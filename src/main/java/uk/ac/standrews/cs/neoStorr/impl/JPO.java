@@ -17,6 +17,7 @@
 package uk.ac.standrews.cs.neoStorr.impl;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.neo4j.driver.Value;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
 import uk.ac.standrews.cs.neoStorr.interfaces.IStoreReference;
@@ -54,6 +55,23 @@ public abstract class JPO extends StaticLXP {
         return super.getThisRef();
     }
 
+    // Fields of Java persistent objects may be assigned directly, so changes to them cannot be tracked.
+
+    @Override
+    public boolean isDirty() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> serializeDirtyFieldsToMap() {
+        return serializeFieldsToMap();
+    }
+
+    @Override
+    public Map<String, Value> serializeDirtyFieldsToValues() {
+        return serializeFieldsToValues();
+    }
+
     public void put(final String key, Object value) {
 
         final JPOMetaData md = getJPOMetaData();
@@ -18,10 +18,13 @@ package uk.ac.standrews.cs.neoStorr.impl;
 
 import org.json.JSONException;
 import org.json.JSONWriter;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
 import uk.ac.standrews.cs.neoStorr.interfaces.IRepository;
 import uk.ac.standrews.cs.neoStorr.interfaces.IStoreReference;
+import uk.ac.standrews.cs.neoStorr.types.LXPBaseType;
 
 import java.util.*;
 
@@ -37,15 +40,31 @@ public abstract class LXP extends PersistentObject {
     private static final int INITIAL_SIZE = 5;
     private static final int SIZE_INCREMENT = 5;
 
-    private Object[] field_storage = new Object[INITIAL_SIZE];   // where the data lives in the LXP.
+    private static final Object PRIMITIVE_VALUE = new Object();  // marks a slot whose value is held in primitive_storage.
+
+    private static final Object[] NO_FIELDS = new Object[0];
+
+    private Object[] field_storage;                              // where the data lives in the LXP.
+    private long[] primitive_storage = null;                     // values of primitive typed slots in metadata primitive index order, doubles as raw bits, null until one is set.
     private int next_free_slot = 0;
+    private BitSet dirty_slots = null;                           // slots changed since the LXP was last loaded or written, null if none.
 
     public LXP() {
         super();
+        field_storage = new Object[INITIAL_SIZE];
     }
 
     public LXP(final long object_id, final IBucket bucket) {
+        this(object_id, bucket, INITIAL_SIZE);
+    }
+
+    /**
+     * @param storage_size the number of slots initially allocated, which may be zero for LXPs that hold no fields in slots
+     */
+    LXP(final long object_id, final IBucket<?> bucket, final int storage_size) {
+
         super(object_id, bucket);
+        field_storage = storage_size == 0 ? NO_FIELDS : new Object[storage_size];
     }
 
     /**
@@ -73,7 +92,7 @@ public abstract class LXP extends PersistentObject {
     public Object get(final int slot) {
 
         try {
-            return field_storage[slot];
+            return getValue(slot);
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         }
@@ -88,12 +107,12 @@ public abstract class LXP extends PersistentObject {
     public String getString(final int slot) {
 
         try {
-            return (String) field_storage[slot];
+            return (String) getValue(slot);
 
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected String found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected String found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -106,11 +125,12 @@ public abstract class LXP extends PersistentObject {
     public double getDouble(final int slot) {
 
         try {
+            if (holdsPrimitive(slot, LXPBaseType.DOUBLE)) return Double.longBitsToDouble(primitiveBits(slot));
             return (Double) field_storage[slot];
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected double found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected double found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -122,11 +142,12 @@ public abstract class LXP extends PersistentObject {
     public int getInt(final int slot) {
 
         try {
+            if (holdsPrimitive(slot, LXPBaseType.INT)) return (int) primitiveBits(slot);
             return (Integer) field_storage[slot];
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected int found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected int found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -139,11 +160,12 @@ public abstract class LXP extends PersistentObject {
     public boolean getBoolean(final int slot) {
 
         try {
+            if (holdsPrimitive(slot, LXPBaseType.BOOLEAN)) return primitiveBits(slot) != 0;
             return (Boolean) field_storage[slot];
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected boolean found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected boolean found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -156,11 +178,12 @@ public abstract class LXP extends PersistentObject {
     public long getLong(final int slot) {
 
         try {
+            if (holdsPrimitive(slot, LXPBaseType.LONG)) return primitiveBits(slot);
             return (Long) field_storage[slot];
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected Long found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected Long found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -173,11 +196,11 @@ public abstract class LXP extends PersistentObject {
     public List getList(final int slot) {
 
         try {
-            return (List) field_storage[slot];
+            return (List) getValue(slot);
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected String found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected String found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -190,11 +213,11 @@ public abstract class LXP extends PersistentObject {
     public IStoreReference getRef(final int slot) {
 
         try {
-            return (IStoreReference) field_storage[slot];
+            return (IStoreReference) getValue(slot);
         } catch (final IndexOutOfBoundsException e) {
             throw new RuntimeException("Illegal slot number: " + slot);
         } catch (final ClassCastException e) {
-            throw new RuntimeException("expected String found: " + field_storage[slot].getClass().getName());
+            throw new RuntimeException("expected String found: " + getValue(slot).getClass().getName());
         }
     }
 
@@ -227,7 +250,7 @@ public abstract class LXP extends PersistentObject {
         if (slot == null) {
             throw new RuntimeException("No field with name " + label + " in " + getId());
         }
-        return field_storage[slot];
+        return getValue(slot);
     }
 
     /**
@@ -260,7 +283,8 @@ public abstract class LXP extends PersistentObject {
      */
     public void put(final int slot, final double value) {
 
-        putValue(slot, value);
+        if (primitiveType(slot) == LXPBaseType.DOUBLE) putPrimitive(slot, Double.doubleToRawLongBits(value));
+        else putValue(slot, value);
     }
 
     /**
@@ -271,7 +295,8 @@ public abstract class LXP extends PersistentObject {
      */
     public void put(final int slot, final int value) {
 
-        putValue(slot, value);
+        if (primitiveType(slot) == LXPBaseType.INT) putPrimitive(slot, value);
+        else putValue(slot, value);
     }
 
     /**
@@ -282,7 +307,8 @@ public abstract class LXP extends PersistentObject {
      */
     public void put(final int slot, final boolean value) {
 
-        putValue(slot, value);
+        if (primitiveType(slot) == LXPBaseType.BOOLEAN) putPrimitive(slot, value ? 1 : 0);
+        else putValue(slot, value);
     }
 
     /**
@@ -293,7 +319,8 @@ public abstract class LXP extends PersistentObject {
      */
     public void put(final int slot, final long value) {
 
-        putValue(slot, value);
+        if (primitiveType(slot) == LXPBaseType.LONG) putPrimitive(slot, value);
+        else putValue(slot, value);
     }
 
     /**
@@ -327,17 +354,142 @@ public abstract class LXP extends PersistentObject {
     public void put(final String key, final Object value) {
 
         check(key);
-        field_storage[getMetaData().getSlot(key)] = value;
+        putValue(getMetaData().getSlot(key), value);
     }
 
     // Slot management
 
     private void putValue(final int slot, final Object value) {
 
+        final LXPBaseType primitive_type = primitiveType(slot);
+
+        if (primitive_type != null && isBoxedValueOfType(value, primitive_type)) {
+            putPrimitive(slot, toPrimitiveBits(value));
+            return;
+        }
+
         if (slot >= field_storage.length) {
             growStorage(slot);
         }
         field_storage[slot] = value;
+
+        markDirty(slot);
+    }
+
+    private void putPrimitive(final int slot, final long bits) {
+
+        if (slot >= field_storage.length) {
+            growStorage(slot);
+        }
+        final LXPMetaData metadata = getMetaData();
+        if (primitive_storage == null) {
+            primitive_storage = new long[metadata.getPrimitiveCount()];
+        }
+        field_storage[slot] = PRIMITIVE_VALUE;
+        primitive_storage[metadata.getPrimitiveIndex(slot)] = bits;
+
+        markDirty(slot);
+    }
+
+    private void markDirty(final int slot) {
+
+        if (dirty_slots == null) dirty_slots = new BitSet();
+        dirty_slots.set(slot);
+
+        fieldChanged(slot);
+    }
+
+    /**
+     * Called whenever a field is set, for subclasses that derive state from their fields.
+     *
+     * @param slot the slot of the field that was set
+     */
+    protected void fieldChanged(final int slot) {
+    }
+
+    /**
+     * @return the primitive type declared for the slot, or null if values in the slot are held as objects
+     */
+    private LXPBaseType primitiveType(final int slot) {
+
+        final LXPBaseType[] primitive_types = getMetaData().getPrimitiveTypes();
+        return primitive_types != null && slot < primitive_types.length ? primitive_types[slot] : null;
+    }
+
+    /**
+     * Integer values read from the store are returned as Long, so a Long in the range of int is accepted for an INT slot.
+     */
+    private static boolean isBoxedValueOfType(final Object value, final LXPBaseType type) {
+
+        switch (type) {
+            case INT:
+                return value instanceof Integer || value instanceof Long && (Long) value == ((Long) value).intValue();
+            case LONG:
+                return value instanceof Long || value instanceof Integer;
+            case DOUBLE:
+                return value instanceof Double;
+            case BOOLEAN:
+                return value instanceof Boolean;
+            default:
+                return false;
+        }
+    }
+
+    private static long toPrimitiveBits(final Object value) {
+
+        if (value instanceof Double) return Double.doubleToRawLongBits((Double) value);
+        if (value instanceof Boolean) return (Boolean) value ? 1 : 0;
+        return ((Number) value).longValue();
+    }
+
+    private boolean holdsPrimitive(final int slot, final LXPBaseType type) {
+
+        return field_storage[slot] == PRIMITIVE_VALUE && primitiveType(slot) == type;
+    }
+
+    private long primitiveBits(final int slot) {
+
+        return primitive_storage[getMetaData().getPrimitiveIndex(slot)];
+    }
+
+    /**
+     * @return the value in the slot, boxing it if it is held in primitive storage
+     */
+    private Object getValue(final int slot) {
+
+        final Object value = field_storage[slot];
+        if (value != PRIMITIVE_VALUE) return value;
+
+        final long bits = primitiveBits(slot);
+
+        switch (primitiveType(slot)) {
+            case INT:
+                return (int) bits;
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case BOOLEAN:
+                return bits != 0;
+            default:
+                return bits;
+        }
+    }
+
+    // Change tracking
+
+    /**
+     * @return true if any field has been set since the LXP was last loaded from or written to a bucket.
+     */
+    public boolean isDirty() {
+
+        return dirty_slots != null && !dirty_slots.isEmpty();
+    }
+
+    /**
+     * Records that the fields of the LXP are the same as those held in its bucket.
+     */
+    public void markClean() {
+
+        dirty_slots = null;
     }
 
     private void copyArray(final int new_size) {
@@ -373,14 +525,23 @@ public abstract class LXP extends PersistentObject {
 
     private void serializeFieldsToJSON(final JSONWriter writer) throws JSONException {
 
-        for (int i = 0; i < getMetaData().getFieldCount(); i++) {
+        final LXPMetaData metadata = getMetaData();
+        final int field_count = metadata.getFieldCount();
 
-            final String key = getMetaData().getFieldName(i);
+        for (int i = 0; i < field_count; i++) {
+
+            final String key = metadata.getFieldName(i);
             writer.key(key);
+
+            if (i < field_storage.length && field_storage[i] == PRIMITIVE_VALUE) {
+                writePrimitiveValue(writer, i);
+                continue;
+            }
+
             Object value = null;
 
             try {
-                value = field_storage[i];
+                value = getValue(i);
 
             } catch (IndexOutOfBoundsException e) {
                 // if the static LXP has been dynamically created - e.g.
@@ -406,11 +567,14 @@ public abstract class LXP extends PersistentObject {
     @Override
     public Map<String, Object> serializeFieldsToMap() {
 
-        Map<String, Object> map = new HashMap<>();
-        for (int i = 0; i < getMetaData().getFieldCount(); i++) {
-            final String key = getMetaData().getFieldName(i);
+        final LXPMetaData metadata = getMetaData();
+        final int field_count = metadata.getFieldCount();
+
+        final Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < field_count; i++) {
+            final String key = metadata.getFieldName(i);
             try {
-                final Object value = field_storage[i];
+                final Object value = getValue(i);
                 addValueToMap(map, key, value);
 
             } catch (IndexOutOfBoundsException ignored) {
@@ -421,6 +585,79 @@ public abstract class LXP extends PersistentObject {
         return map;
     }
 
+    /**
+     * @return the fields set since the LXP was last loaded from or written to a bucket, keyed by field name.
+     */
+    public Map<String, Object> serializeDirtyFieldsToMap() {
+
+        final Map<String, Object> map = new HashMap<>();
+        if (dirty_slots == null) return map;
+
+        final LXPMetaData metadata = getMetaData();
+        for (int slot = dirty_slots.nextSetBit(0); slot >= 0; slot = dirty_slots.nextSetBit(slot + 1)) {
+            addValueToMap(map, metadata.getFieldName(slot), getValue(slot));
+        }
+        return map;
+    }
+
+    /**
+     * Serialises the fields of the LXP directly into driver values, without boxing primitive fields.
+     *
+     * @return the fields keyed by field name, in a map with room for one further entry without resizing.
+     */
+    public Map<String, Value> serializeFieldsToValues() {
+
+        final LXPMetaData metadata = getMetaData();
+        final int field_count = Math.min(metadata.getFieldCount(), field_storage.length); // fields may be missing - dynamic instantiation.
+
+        final Map<String, Value> values = HashMap.newHashMap(field_count + 1);
+        for (int slot = 0; slot < field_count; slot++) {
+            values.put(metadata.getFieldName(slot), toDriverValue(slot));
+        }
+        return values;
+    }
+
+    /**
+     * @return the fields set since the LXP was last loaded from or written to a bucket, as driver values keyed by field name.
+     */
+    public Map<String, Value> serializeDirtyFieldsToValues() {
+
+        if (dirty_slots == null) return new HashMap<>();
+
+        final LXPMetaData metadata = getMetaData();
+        final Map<String, Value> values = HashMap.newHashMap(dirty_slots.cardinality());
+
+        for (int slot = dirty_slots.nextSetBit(0); slot >= 0; slot = dirty_slots.nextSetBit(slot + 1)) {
+            values.put(metadata.getFieldName(slot), toDriverValue(slot));
+        }
+        return values;
+    }
+
+    private Value toDriverValue(final int slot) {
+
+        final Object value = field_storage[slot];
+
+        if (value == PRIMITIVE_VALUE) {
+
+            final long bits = primitiveBits(slot);
+
+            switch (primitiveType(slot)) {
+                case INT:
+                    return Values.value((int) bits);
+                case DOUBLE:
+                    return Values.value(Double.longBitsToDouble(bits));
+                case BOOLEAN:
+                    return Values.value(bits != 0);
+                default:
+                    return Values.value(bits);
+            }
+        }
+
+        if (value instanceof LXPReference) return Values.value(value.toString());
+        if (value instanceof LXP) return Values.value(serializeReference((LXP) value));
+        return Values.value(value);
+    }
+
     private void addValueToMap(final Map<String, Object> map, final String key, final Object value) {
 
         if (value instanceof LXPReference) {
@@ -434,8 +671,13 @@ public abstract class LXP extends PersistentObject {
 
     private void addReferenceToMap(final Map<String, Object> map, final String key, final LXP value) {
 
+        map.put(key, serializeReference(value));
+    }
+
+    private static String serializeReference(final LXP value) {
+
         try {
-            map.put(key, value.getThisRef().toString());
+            return value.getThisRef().toString();
 
         } catch (final PersistentObjectException e) {
             throw new JSONException("Cannot serialise reference");
@@ -452,6 +694,22 @@ public abstract class LXP extends PersistentObject {
         }
     }
 
+    private void writePrimitiveValue(final JSONWriter writer, final int slot) throws JSONException {
+
+        final long bits = primitiveBits(slot);
+
+        switch (primitiveType(slot)) {
+            case DOUBLE:
+                writer.value(Double.longBitsToDouble(bits));
+                break;
+            case BOOLEAN:
+                writer.value(bits != 0);
+                break;
+            default:
+                writer.value(bits);
+        }
+    }
+
     private static void writeSimpleValue(final JSONWriter writer, final Object value) throws JSONException {
 
         if (value instanceof Double) {
@@ -469,24 +727,23 @@ public abstract class LXP extends PersistentObject {
 
     void initialiseProperties(final Map<String, Object> properties) throws JSONException {
 
-        final Map<String, Integer> field_name_to_slot = getMetaData().getFieldNamesToSlotNumbers();
-
         for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+            initialiseProperty(entry.getKey(), entry.getValue()); // keep the keys identical whenever possible.
+        }
+    }
 
-            final String key = entry.getKey(); // keep the keys identical whenever possible.
+    void initialiseProperty(final String key, final Object value) throws JSONException {
 
-            if (!key.equals(STORR_ID_KEY)) { // these are not for public consumption - used in Neo to store storr id
-                final Object value = entry.getValue();
+        if (!key.equals(STORR_ID_KEY)) { // these are not for public consumption - used in Neo to store storr id
 
-                if (value != null) {
-                    check(key);
-                    put(field_name_to_slot.get(key), value);
+            if (value != null) {
+                check(key);
+                put(getMetaData().getSlot(key), value);
 
-                } else {
-                    // can occur if dynamically constructed and data has missing field values.
-                    // also for null refs
-                    put(field_name_to_slot.get(key), (Object) null);
-                }
+            } else {
+                // can occur if dynamically constructed and data has missing field values.
+                // also for null refs
+                put(getMetaData().getSlot(key), (Object) null);
             }
         }
     }
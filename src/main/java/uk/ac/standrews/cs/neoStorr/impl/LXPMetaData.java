@@ -16,7 +16,7 @@
  */
 package uk.ac.standrews.cs.neoStorr.impl;
 
-import uk.ac.standrews.cs.neoStorr.interfaces.IReferenceType;
+import uk.ac.standrews.cs.neoStorr.types.LXPBaseType;
 import uk.ac.standrews.cs.neoStorr.types.LXP_LIST;
 import uk.ac.standrews.cs.neoStorr.types.LXP_REF;
 import uk.ac.standrews.cs.neoStorr.types.LXP_SCALAR;
@@ -30,58 +30,144 @@ import java.util.*;
  */
 public class LXPMetaData extends PersistentMetaData {
 
-    private final Map<String, Integer> field_name_to_slot = new HashMap<>();
-    private final Map<Integer, String> slot_to_field_name = new HashMap<>();
+    // All fixed when the metadata is initialised.
+    private final String[] field_names;                      // indexed by slot.
+    private final LXPBaseType[] primitive_types;             // primitive scalar type of each slot, null if the type has no primitive slots.
+    private final int[] primitive_indices;                   // index of each primitive slot in an LXP's primitive storage, -1 for other slots.
+    private final int primitive_count;
+    private final int field_count;
+    private final Map<String, Integer> field_name_to_slot;
+    private final Map<Integer, String> slot_to_field_name;
 
-    private IReferenceType type = null;
+    private volatile ReferenceFixUp reference_fix_up = null;
 
     LXPMetaData() {
+        this(new String[0]);
+    }
+
+    /**
+     * @param field_names the names of the fields, indexed by slot
+     */
+    LXPMetaData(final String[] field_names) {
+
         super();
+
+        this.field_names = field_names;
+        this.primitive_types = null;
+        this.primitive_indices = null;
+        this.primitive_count = 0;
+        this.field_count = field_names.length;
+        this.field_name_to_slot = nameToSlotMap(field_names);
+        this.slot_to_field_name = slotToNameMap(field_names);
     }
 
     public LXPMetaData(final Class metadata_class, final String type_name) {
 
+        this(metadata_class, type_name, assignSlots(metadata_class));
+        TypeFactory.registerClass(type_name, metadata_class);
+    }
+
+    private LXPMetaData(final Class<?> metadata_class, final String type_name, final Field[] slot_fields) {
+
         super(metadata_class, type_name);
-        initialiseMaps(metadata_class);
+
+        field_names = new String[slot_fields.length];
+        for (int slot = 0; slot < slot_fields.length; slot++) {
+            field_names[slot] = slot_fields[slot].getName();
+        }
+
+        primitive_types = primitiveTypes(slot_fields);
+        primitive_indices = primitiveIndices(primitive_types);
+        primitive_count = primitive_indices == null ? 0 : (int) Arrays.stream(primitive_indices).filter(i -> i >= 0).count();
+        field_count = field_names.length;
+        field_name_to_slot = nameToSlotMap(field_names);
+        slot_to_field_name = slotToNameMap(field_names);
     }
 
-    private void initialiseMaps(final Class c) {
+    /**
+     * Numbers the static LXP fields of the class in declaration order, setting each to its slot number.
+     *
+     * @return the fields, indexed by slot
+     */
+    private static Field[] assignSlots(final Class<?> c) {
 
-        final Field[] fields = c.getDeclaredFields();
-        int next_slot = 0;
+        final List<Field> slot_fields = new ArrayList<>();
+        final Set<String> field_names = new HashSet<>();
 
-        for (final Field field : fields) {
+        for (final Field field : c.getDeclaredFields()) {
 
             if (isStaticLXPField(field)) {
 
                 try {
                     field.setAccessible(true);
 
-                    final int slot_value = next_slot++;
+                    final int slot_value = slot_fields.size();
                     final String field_name = field.getName();
 
-                    checkDuplicates(field_name, slot_value);
+                    if (!field_names.add(field_name)) throw new RuntimeException("Duplicated field name: " + field_name);
                     field.setInt(null, slot_value);
 
-                    field_name_to_slot.put(field_name, slot_value);
-                    slot_to_field_name.put(slot_value, field_name);
+                    slot_fields.add(field);
 
                 } catch (final IllegalAccessException e) {
                     throw new RuntimeException("Illegal access for label: " + field.getName());
                 }
             }
         }
+        return slot_fields.toArray(new Field[0]);
     }
 
-    private void checkDuplicates(final String field_name, final int slot_value) {
+    private static LXPBaseType[] primitiveTypes(final Field[] slot_fields) {
 
-        if (slot_to_field_name.containsKey(slot_value)) {
-            throw new RuntimeException("Duplicated slot value: " + slot_value);
+        LXPBaseType[] primitive_types = null;
+
+        for (int slot = 0; slot < slot_fields.length; slot++) {
+
+            final LXP_SCALAR scalar = slot_fields[slot].getAnnotation(LXP_SCALAR.class);
+
+            if (scalar != null && isPrimitive(scalar.type())) {
+
+                if (primitive_types == null) primitive_types = new LXPBaseType[slot_fields.length];
+                primitive_types[slot] = scalar.type();
+            }
         }
+        return primitive_types;
+    }
+
+    private static int[] primitiveIndices(final LXPBaseType[] primitive_types) {
+
+        if (primitive_types == null) return null;
 
-        if (slot_to_field_name.containsValue(field_name)) {
-            throw new RuntimeException("Duplicated field name: " + field_name);
+        final int[] primitive_indices = new int[primitive_types.length];
+        int next_index = 0;
+
+        for (int slot = 0; slot < primitive_types.length; slot++) {
+            primitive_indices[slot] = primitive_types[slot] != null ? next_index++ : -1;
         }
+        return primitive_indices;
+    }
+
+    private static boolean isPrimitive(final LXPBaseType type) {
+
+        return type == LXPBaseType.INT || type == LXPBaseType.LONG || type == LXPBaseType.DOUBLE || type == LXPBaseType.BOOLEAN;
+    }
+
+    private static Map<String, Integer> nameToSlotMap(final String[] field_names) {
+
+        final Map<String, Integer> map = new HashMap<>();
+        for (int slot = 0; slot < field_names.length; slot++) {
+            map.put(field_names[slot], slot);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static Map<Integer, String> slotToNameMap(final String[] field_names) {
+
+        final Map<Integer, String> map = new HashMap<>();
+        for (int slot = 0; slot < field_names.length; slot++) {
+            map.put(slot, field_names[slot]);
+        }
+        return Collections.unmodifiableMap(map);
     }
 
     private static boolean isStaticLXPField(final Field field) {
@@ -117,19 +203,12 @@ public class LXPMetaData extends PersistentMetaData {
     }
 
     public String getFieldName(final int slot) {
-        return slot_to_field_name.get(slot);
+        return slot >= 0 && slot < field_count ? field_names[slot] : null;
     }
 
     public List<String> getFieldNamesInSlotOrder() {
 
-        final List<String> result = new ArrayList<>();
-
-        final int count = field_name_to_slot.keySet().size();
-        for (int i = 0; i < count; i++) {
-            result.add(slot_to_field_name.get(i));
-        }
-
-        return result;
+        return new ArrayList<>(Arrays.asList(field_names));
     }
 
     public Set<String> getFields() {
@@ -141,18 +220,37 @@ public class LXPMetaData extends PersistentMetaData {
     }
 
     public int getFieldCount() {
+        return field_count;
+    }
 
-        return field_name_to_slot.keySet().size();
+    /**
+     * @return the primitive scalar type declared for each slot, indexed by slot and null for other slots,
+     * or null if no slot of this type is primitive
+     */
+    LXPBaseType[] getPrimitiveTypes() {
+        return primitive_types;
     }
 
-    public void setType(final IReferenceType suppliedType) {
+    /**
+     * @return the index of the slot in an LXP's primitive storage, or -1 if the slot is not primitive
+     */
+    int getPrimitiveIndex(final int slot) {
+        return primitive_indices != null && slot < primitive_indices.length ? primitive_indices[slot] : -1;
+    }
 
-        if (type == null) {
-            // TODO put a modified call of Types.checkStructuralConsistency() in here to ensure type compatibility.
-            // TODO need a similar call for dynamic creation of fields if type has been set.
-            type = suppliedType;
-        } else {
-            throw new RuntimeException("Type already defined");
-        }
+    /**
+     * @return the number of primitive slots of this type
+     */
+    int getPrimitiveCount() {
+        return primitive_count;
+    }
+
+    /**
+     * @return the reference fields of this type, compiled on first use
+     */
+    ReferenceFixUp getReferenceFixUp() {
+
+        if (reference_fix_up == null) reference_fix_up = ReferenceFixUp.compile(this);
+        return reference_fix_up;
     }
 }
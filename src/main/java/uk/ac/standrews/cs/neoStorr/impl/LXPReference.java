@@ -16,6 +16,12 @@
  */
 package uk.ac.standrews.cs.neoStorr.impl;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.json.JSONException;
+import org.json.JSONWriter;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
@@ -25,8 +31,16 @@ import uk.ac.standrews.cs.neoStorr.types.LXPBaseType;
 import uk.ac.standrews.cs.neoStorr.types.LXP_SCALAR;
 
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * An immutable reference to a record in a bucket.
+ * The repository and bucket names are interned, so references to records in the same bucket share them, and no
+ * field storage is allocated: the reference fields are held directly and exposed through the usual LXP slots.
+ * Although a reference is an LXP, every put throws UnsupportedOperationException, so code that populates LXPs
+ * generically fails at runtime if given a reference.
  * Created by al on 23/03/15.
  */
 public class LXPReference<T extends LXP> extends StaticLXP implements IStoreReference<T> {
@@ -46,34 +60,45 @@ public class LXPReference<T extends LXP> extends StaticLXP implements IStoreRefe
     @LXP_SCALAR(type = LXPBaseType.LONG)
     public static int OID;
 
-    private static final String SEPARATOR = "/";
+    private static final char SEPARATOR = '/';
+
+    // Weak, so that names are dropped once no reference uses them.
+    private static final Interner<String> interned_names = Interners.newWeakInterner();
+
+    private final String repository_name;
+    private final String bucket_name;
+    private final long oid;
 
     private WeakReference<T> ref = null;
+    private String serialized = null;   // computed on first use.
 
     /**
      * @param serialized - a String of form repo_name SEPARATOR bucket_name SEPARATOR oid
      */
     public LXPReference(final String serialized) {
 
-        try {
-            final String[] tokens = serialized.split(SEPARATOR);
+        this(serialized, serialized.indexOf(SEPARATOR));
+    }
 
-            put(REPOSITORY, tokens[0]);
-            put(BUCKET, tokens[1]);
-            put(OID, Long.parseLong(tokens[2]));
+    private LXPReference(final String serialized, final int first_separator) {
 
-        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
-            throw new RuntimeException(e);
-        }
+        this(serialized, first_separator, serialized.indexOf(SEPARATOR, first_separator + 1));
+    }
+
+    private LXPReference(final String serialized, final int first_separator, final int second_separator) {
+
+        this(repositoryToken(serialized, first_separator, second_separator),
+                serialized.substring(first_separator + 1, second_separator),
+                parseOid(serialized, second_separator));
     }
 
     public LXPReference(final String repo_name, final String bucket_name, final long oid) {
 
-        super();
+        super(oid, null, 0);
 
-        this.put(REPOSITORY, repo_name);
-        this.put(BUCKET, bucket_name);
-        this.put(OID, oid);
+        this.repository_name = intern(repo_name);
+        this.bucket_name = intern(bucket_name);
+        this.oid = oid;
         // don't bother looking up cache reference on demand or by caller
     }
 
@@ -93,26 +118,202 @@ public class LXPReference<T extends LXP> extends StaticLXP implements IStoreRefe
         // don't bother looking up cache reference on demand
     }
 
+    private static String repositoryToken(final String serialized, final int first_separator, final int second_separator) {
+
+        if (first_separator < 0 || second_separator < 0) throw new RuntimeException("Illegal reference: " + serialized);
+        return serialized.substring(0, first_separator);
+    }
+
+    private static long parseOid(final String serialized, final int second_separator) {
+
+        // Any further tokens are ignored.
+        final int next_separator = serialized.indexOf(SEPARATOR, second_separator + 1);
+        final int end = next_separator < 0 ? serialized.length() : next_separator;
+
+        try {
+            return Long.parseLong(serialized, second_separator + 1, end, 10);
+
+        } catch (final NumberFormatException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String intern(final String name) {
+
+        return name == null ? null : interned_names.intern(name);
+    }
+
     @Override
     public String getRepositoryName() {
-        return (String) get(REPOSITORY);
+        return repository_name;
     }
 
     @Override
     public String getBucketName() {
-        return (String) get(BUCKET);
+        return bucket_name;
     }
 
     @Override
     public long getObjectId() {
-        return (long) get(OID);
+        return oid;
+    }
+
+    @Override
+    public Object get(final int slot) {
+
+        if (slot == REPOSITORY) return repository_name;
+        if (slot == BUCKET) return bucket_name;
+        if (slot == OID) return oid;
+        throw new RuntimeException("Illegal slot number: " + slot);
+    }
+
+    @Override
+    public Object get(final String label) {
+
+        final Integer slot = getMetaData().getSlot(label);
+        if (slot == null) throw new RuntimeException("No field with name " + label + " in reference");
+        return get(slot);
+    }
+
+    @Override
+    public String getString(final int slot) {
+
+        if (slot == REPOSITORY) return repository_name;
+        if (slot == BUCKET) return bucket_name;
+        throw new RuntimeException("expected String found: " + get(slot).getClass().getName());
+    }
+
+    @Override
+    public long getLong(final int slot) {
+
+        if (slot == OID) return oid;
+        throw new RuntimeException("expected Long found: " + get(slot).getClass().getName());
+    }
+
+    @Override
+    public int getInt(final int slot) {
+        throw new RuntimeException("expected int found: " + get(slot).getClass().getName());
+    }
+
+    @Override
+    public double getDouble(final int slot) {
+        throw new RuntimeException("expected double found: " + get(slot).getClass().getName());
+    }
+
+    @Override
+    public boolean getBoolean(final int slot) {
+        throw new RuntimeException("expected boolean found: " + get(slot).getClass().getName());
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List getList(final int slot) {
+        throw new RuntimeException("expected List found: " + get(slot).getClass().getName());
+    }
+
+    @Override
+    public IStoreReference<?> getRef(final int slot) {
+        throw new RuntimeException("expected reference found: " + get(slot).getClass().getName());
+    }
+
+    // The fields are held directly rather than in slots, so every way of setting a slot is refused before it is changed.
+
+    @Override
+    public void put(final int slot, final Object value) {
+        throw immutable();
+    }
+
+    @Override
+    public void put(final int slot, final String value) {
+        throw immutable();
+    }
+
+    @Override
+    public void put(final int slot, final double value) {
+        throw immutable();
+    }
+
+    @Override
+    public void put(final int slot, final int value) {
+        throw immutable();
+    }
+
+    @Override
+    public void put(final int slot, final boolean value) {
+        throw immutable();
+    }
+
+    @Override
+    public void put(final int slot, final long value) {
+        throw immutable();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void put(final int slot, final List value) {
+        throw immutable();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void put(final int slot, final IStoreReference value) {
+        throw immutable();
+    }
+
+    @Override
+    public void put(final String key, final Object value) {
+        throw immutable();
+    }
+
+    @Override
+    protected void fieldChanged(final int slot) {
+        throw immutable();
+    }
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("references are immutable");
+    }
+
+    // Serialisation of the fields held directly.
+
+    @Override
+    public void serializeToJSON(final JSONWriter writer) throws JSONException {
+
+        writer.object();
+        writer.key(fieldName(REPOSITORY)).value(repository_name);
+        writer.key(fieldName(BUCKET)).value(bucket_name);
+        writer.key(fieldName(OID)).value(oid);
+        writer.endObject();
+    }
+
+    @Override
+    public Map<String, Object> serializeFieldsToMap() {
+
+        final Map<String, Object> map = new HashMap<>();
+        map.put(fieldName(REPOSITORY), repository_name);
+        map.put(fieldName(BUCKET), bucket_name);
+        map.put(fieldName(OID), oid);
+        return map;
+    }
+
+    @Override
+    public Map<String, Value> serializeFieldsToValues() {
+
+        final Map<String, Value> values = HashMap.newHashMap(4);
+        values.put(fieldName(REPOSITORY), Values.value(repository_name));
+        values.put(fieldName(BUCKET), Values.value(bucket_name));
+        values.put(fieldName(OID), Values.value(oid));
+        return values;
+    }
+
+    private static String fieldName(final int slot) {
+        return static_md.getFieldName(slot);
     }
 
     public LXP getReferend() throws BucketException, RepositoryException {
 
         return getReferend(getBucket());
     }
-
     public T getReferend(final Class c) throws BucketException, RepositoryException {
 
         // TODO class is ignored if this reference was created using an explicit reference.
@@ -175,8 +376,14 @@ public class LXPReference<T extends LXP> extends StaticLXP implements IStoreRefe
         return false;
     }
 
+    public int hashCode() {
+        return Long.hashCode(oid);
+    }
+
     public String toString() {
-        return getRepositoryName() + SEPARATOR + getBucketName() + SEPARATOR + getObjectId();
+
+        if (serialized == null) serialized = repository_name + SEPARATOR + bucket_name + SEPARATOR + oid;
+        return serialized;
     }
 
     @Override
@@ -20,6 +20,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Striped;
 import org.neo4j.driver.*;
 import org.neo4j.driver.types.Node;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.*;
@@ -28,30 +29,56 @@ import uk.ac.standrews.cs.neoStorr.interfaces.*;
 import uk.ac.standrews.cs.neoStorr.types.Types;
 import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
-import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongConsumer;
 
 import static uk.ac.standrews.cs.neoStorr.impl.Repository.LEGAL_CHARS_PATTERN;
 
 public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
 
-    private static final String LXP_EXISTS_QUERY = "MATCH (o:STORR_LXP { STORR_ID:$id } ) RETURN o";
+    private static final String LXP_EXISTS_QUERY = "RETURN EXISTS { MATCH (o:STORR_LXP { STORR_ID:$id } ) } AS exists";
     private static final String CREATE_LXP_QUERY = "CREATE (n:STORR_LXP $props) RETURN n";
     private static final String ADD_LXP_TO_BUCKET_QUERY = "MATCH(b:STORR_BUCKET),(l:STORR_LXP) WHERE id(b)=$bucket_id AND id(l)=$new_id CREATE (b)-[r:STORR_MEMBER]->(l)";
     private static final String GET_LXPS_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id RETURN l";
     private static final String GET_LXP_BY_STORR_ID_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id AND l.STORR_ID=$storr_id RETURN l";
-    private static final String UPDATE_LXP_PARTIAL_QUERY_BY_STORR_ID = "MATCH (l:STORR_LXP { STORR_ID:$storr_id } ) SET l={ STORR_ID : ";
+    private static final String GET_LXPS_BY_STORR_IDS_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id AND l.STORR_ID IN $storr_ids RETURN l";
+    private static final String UPDATE_LXP_QUERY = "MATCH (l:STORR_LXP { STORR_ID:$storr_id } ) SET l += $delta";
+    private static final String REPLACE_LXP_QUERY = "MATCH (l:STORR_LXP { STORR_ID:$storr_id } ) SET l = $properties";
+    private static final String COUNT_LXPS_QUERY = "MATCH(b:STORR_BUCKET) WHERE id(b)=$bucket_id RETURN COUNT { (b)-[:STORR_MEMBER]->() } AS size";
     private static final String GET_LXP_OIDS_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id RETURN l.STORR_ID";
-    private static final String GET_TYPE_LABEL_QUERY = "MATCH(b:STORR_BUCKET) WHERE id(b)=$bucket_id RETURN b.TYPE_LABEL_ID";
+    private static final String GET_TYPE_LABEL_QUERY = "MATCH(b:STORR_BUCKET) WHERE id(b)=$bucket_id RETURN b.TYPE_LABEL_ID AS type_label_id";
     private static final String SET_TYPE_LABEL_QUERY = "MATCH(b:STORR_BUCKET) WHERE id(b)=$bucket_id SET b.TYPE_LABEL_ID =$type_label";
-    private static final String DELETE_OBJECT_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id AND l.STORR_ID=$to_delete_id DETACH DELETE l";
+    private static final String DELETE_OBJECT_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id AND l.STORR_ID=$to_delete_id DETACH DELETE l RETURN count(*) AS deleted";
+
+    // Creates and links a batch of records only if none of their ids is already in use, returning the number created.
+    // Labels cannot be parameters, so the records of each class are created by a subquery with the class's label.
+    private static final String CREATE_LXP_BATCH_QUERY_PREFIX = "MATCH(b:STORR_BUCKET) WHERE id(b)=$bucket_id " +
+            "OPTIONAL MATCH(o:STORR_LXP) WHERE o.STORR_ID IN $storr_ids " +
+            "WITH b, count(o) AS clashes WHERE clashes = 0 ";
+    private static final String CREATE_LXP_BATCH_SUBQUERY = "CALL { WITH b UNWIND $rows%1$d AS row CREATE (n:STORR_LXP%2$s) " +
+            "SET n = row CREATE (b)-[r:STORR_MEMBER]->(n) RETURN count(n) AS created%1$d } ";
+
+    // Updates a batch of members only if all of them are in the bucket, returning the number updated.
+    // Each row either merges its changed properties into the member or replaces all of the member's properties.
+    private static final String UPDATE_LXP_BATCH_QUERY = "MATCH(b:STORR_BUCKET) WHERE id(b)=$bucket_id " +
+            "OPTIONAL MATCH(b)-[:STORR_MEMBER]-(o:STORR_LXP) WHERE o.STORR_ID IN [row IN $rows | row.STORR_ID] " +
+            "WITH b, count(o) AS found WHERE found = size($rows) " +
+            "UNWIND $rows AS row MATCH(b)-[:STORR_MEMBER]-(l:STORR_LXP { STORR_ID:row.STORR_ID }) " +
+            "FOREACH (ignored IN CASE WHEN row.replace THEN [] ELSE [1] END | SET l += row.properties) " +
+            "FOREACH (ignored IN CASE WHEN row.replace THEN [1] ELSE [] END | SET l = row.properties) " +
+            "RETURN count(l) AS updated";
+    static final String DELETE_MEMBERS_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id WITH l LIMIT $batch_size DETACH DELETE l RETURN count(*) AS deleted";
+    private static final String COUNT_MEMBERS_WITH_IDS_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id AND l.STORR_ID IN $storr_ids RETURN count(l) AS found";
+    private static final String DELETE_OBJECTS_QUERY = "MATCH(b:STORR_BUCKET)-[r:STORR_MEMBER]-(l:STORR_LXP) WHERE id(b)=$bucket_id AND l.STORR_ID IN $to_delete_ids DETACH DELETE l RETURN count(*) AS deleted";
 
     private static final int DEFAULT_CACHE_SIZE = 10000; // almost certainly too small for serious apps.
+    static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int UPDATE_LOCK_STRIPES = 64;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
 
     private final IRepository repository;     // the repository in which the bucket is stored
 
@@ -59,10 +86,23 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
     private final String bucket_name;         // the name of this bucket - used as the directory name
     private final long neo_id;                // the neo4J id of this bucket
     private final NeoDbCypherBridge bridge;
-    private Class<T> bucket_type = null;      // the type of records in this bucket if not null.
-    private long type_label_id = -1;          // -1 == not set
-    private Cache<Long, PersistentObject> object_cache;
-    private int cache_size = DEFAULT_CACHE_SIZE;
+    private volatile Class<T> bucket_type = null;      // the type of records in this bucket if not null.
+    private volatile long type_label_id = -1;          // -1 == not set
+    private volatile boolean made_untyped = false;     // true if made without a type, so that it cannot be given one.
+    private final AtomicReference<Cache<Long, PersistentObject>> object_cache = new AtomicReference<>();
+    private final Object cache_lock = new Object();                     // serialises replacing the object cache and removing entries from it.
+    private final Striped<Lock> update_locks = Striped.lock(UPDATE_LOCK_STRIPES);   // serialises updates of each record.
+    private volatile int cache_size = DEFAULT_CACHE_SIZE;
+    private int batch_size = DEFAULT_BATCH_SIZE;
+    private int fetch_size = DEFAULT_FETCH_SIZE;
+
+    private volatile boolean size_cache_enabled = false;
+
+    private final Object size_lock = new Object();
+    private long cached_size = -1;                                       // -1 == not known, guarded by size_lock
+    private long size_generation = 0;                                    // advanced by every change of membership, guarded by size_lock
+    private int size_changes_in_progress = 0;                            // guarded by size_lock
+    private final Set<ITransaction> size_changing_transactions = new HashSet<>();   // open transactions that changed membership, guarded by size_lock
 
     /**
      * Creates a DirectoryBackedBucket with no factory - a persistent collection of ILXPs
@@ -81,7 +121,7 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
         this.neo_id = neo_id;
         store = repository.getStore();
         bridge = store.getBridge();
-        object_cache = newCache(DEFAULT_CACHE_SIZE);
+        object_cache.set(newCache(DEFAULT_CACHE_SIZE));
     }
 
     /**
@@ -95,15 +135,47 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
     NeoBackedBucket(final IRepository repository, final String bucket_name, final long neo_id, final Class<T> bucket_type) throws RepositoryException {
 
         this(repository, bucket_name, neo_id);
-        this.bucket_type = bucket_type;
+        assignBucketType(bucket_type, Repository.UNTYPED_BUCKET_LABEL);   // the type label is recorded by the caller.
+    }
 
-        try {
-            final T instance = bucket_type.getDeclaredConstructor().newInstance(); // guarantees meta data creation.
-            type_label_id = instance.getMetaData().getType().getId();
+    /**
+     * Records the type of the records in this bucket on a handle looked up without one, so that typed and untyped
+     * lookups of the bucket share a single handle and object cache.
+     *
+     * @param c the type of the records
+     * @param persisted_type_label_id the type label recorded for the bucket in the store, or
+     *                                {@link Repository#UNTYPED_BUCKET_LABEL} if none was recorded
+     * @return true if this handle is now of the given type, and false if it already had a different type, the
+     * bucket was made untyped, or the store records a different type for the bucket
+     * @throws RepositoryException if the type cannot be instantiated
+     */
+    @SuppressWarnings("unchecked")
+    synchronized boolean assignBucketType(final Class<?> c, final long persisted_type_label_id) throws RepositoryException {
 
-        } catch (final IllegalAccessException | InstantiationException | NoSuchMethodException | InvocationTargetException e) {
-            throw new RepositoryException(e);
+        if (bucket_type == null && !made_untyped) {
+
+            final long label_id;
+            try {
+                final LXP instance = (LXP) c.getDeclaredConstructor().newInstance(); // guarantees meta data creation.
+                label_id = instance.getMetaData().getType().getId();
+
+            } catch (final IllegalAccessException | InstantiationException | NoSuchMethodException | InvocationTargetException e) {
+                throw new RepositoryException(e);
+            }
+
+            if (persisted_type_label_id != Repository.UNTYPED_BUCKET_LABEL && persisted_type_label_id != label_id) return false;
+
+            type_label_id = label_id;
+            bucket_type = (Class<T>) c;
+
+            // Records cached while the handle was untyped are dynamic records rather than instances of the type.
+            replaceCache();
         }
+        return bucketTypeIsCorrect(c);
+    }
+
+    void setMadeUntyped() {
+        made_untyped = true;
     }
 
     public boolean persistentLabelIsCorrect() {
@@ -121,7 +193,7 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
         try (final Session session = bridge.getNewSession()) {
 
             final Result result = session.run(GET_TYPE_LABEL_QUERY, Values.parameters("bucket_id", neo_id));
-            final List<Value> ids = result.list(r -> r.get("l.TYPE_LABEL_ID"));
+            final List<Value> ids = result.list(r -> r.get("type_label_id"));
 
             if (ids.isEmpty())
                 throw new RuntimeException("Could not find type label for bucket with neo_id: " + neo_id);
@@ -132,11 +204,7 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
 
     public void setPersistentTypeLabelID() throws BucketException {
 
-        final boolean auto_commit = store.getTransactionManager().isAutoCommitEnabled();
-        final Transaction tx = getTransaction(auto_commit);
-
-        tx.run(SET_TYPE_LABEL_QUERY, Values.parameters("bucket_id", neo_id, "type_label", type_label_id));
-        if (auto_commit) tx.commit();
+        write((tx, retry) -> tx.run(SET_TYPE_LABEL_QUERY, Values.parameters("bucket_id", neo_id, "type_label", type_label_id)).consume());
     }
 
     public static boolean bucketNameIsIllegal(String name) {
@@ -146,19 +214,146 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
 
     public void setCacheSize(final int cache_size) throws BucketException {
 
-        if (cache_size < object_cache.size())
-            throw new BucketException("Object cache cannot be dynamically made smaller");
+        synchronized (cache_lock) {
+
+            if (cache_size < cache().size())
+                throw new BucketException("Object cache cannot be dynamically made smaller");
 
-        final LoadingCache<Long, PersistentObject> new_cache = newCache(cache_size);
-        new_cache.putAll(object_cache.asMap());
-        this.cache_size = cache_size;
-        object_cache = new_cache;
+            final Cache<Long, PersistentObject> new_cache = newCache(cache_size);
+            this.cache_size = cache_size;
+
+            // Copied under the lock, so that a concurrent deletion or invalidation is not undone, and without
+            // replacing records cached in the new cache since the swap.
+            final Map<Long, PersistentObject> new_entries = new_cache.asMap();
+            object_cache.getAndSet(new_cache).asMap().forEach(new_entries::putIfAbsent);
+        }
     }
 
     public int getCacheSize() {
         return cache_size;
     }
 
+    public void setBatchSize(final int batch_size) throws BucketException {
+
+        if (batch_size < 1) throw new BucketException("Batch size must be positive");
+        this.batch_size = batch_size;
+    }
+
+    public int getBatchSize() {
+        return batch_size;
+    }
+
+    public void setFetchSize(final int fetch_size) throws BucketException {
+
+        if (fetch_size < 1) throw new BucketException("Fetch size must be positive");
+        this.fetch_size = fetch_size;
+    }
+
+    public int getFetchSize() {
+        return fetch_size;
+    }
+
+    public void setSizeCacheEnabled(final boolean enabled) {
+
+        forgetCachedSize();
+        size_cache_enabled = enabled;
+    }
+
+    public boolean isSizeCacheEnabled() {
+        return size_cache_enabled;
+    }
+
+    /**
+     * Runs a write that changes the membership of the bucket by the number it returns, or by an unknown number if it
+     * returns null. While the write is in progress, and until the transaction in which it runs completes, no size
+     * counted from the database is cached, since the count may or may not include the write.
+     */
+    private void writeMembers(final NeoDbCypherBridge.WriteWork<Long, BucketException> work) throws BucketException {
+
+        final ITransaction transaction = getWriteTransaction();
+        startSizeChange(transaction);
+
+        Long delta = null;
+        try {
+            delta = write(transaction, work);
+
+        } finally {
+            endSizeChange(transaction, delta);
+        }
+    }
+
+    private void startSizeChange(final ITransaction transaction) {
+
+        final boolean first_in_transaction;
+
+        synchronized (size_lock) {
+            size_generation++;
+            first_in_transaction = transaction != null && size_changing_transactions.add(transaction);
+            if (transaction == null || first_in_transaction) size_changes_in_progress++;
+        }
+
+        // Registered outside the lock, since completion actions are run while the transaction is locked.
+        if (first_in_transaction) transaction.onCompletion(() -> transactionCompleted(transaction));
+    }
+
+    private void endSizeChange(final ITransaction transaction, final Long delta) {
+
+        synchronized (size_lock) {
+            size_generation++;
+
+            if (transaction == null) {
+                size_changes_in_progress--;
+                cached_size = delta != null && cached_size >= 0 ? cached_size + delta : -1;
+
+            } else {
+                // The change may yet be rolled back, so the size has to be counted again.
+                cached_size = -1;
+            }
+        }
+    }
+
+    private void transactionCompleted(final ITransaction transaction) {
+
+        synchronized (size_lock) {
+            if (size_changing_transactions.remove(transaction)) size_changes_in_progress--;
+            forgetCachedSize();
+        }
+    }
+
+    private void forgetCachedSize() {
+
+        synchronized (size_lock) {
+            size_generation++;
+            cached_size = -1;
+        }
+    }
+
+    private Cache<Long, PersistentObject> cache() {
+        return object_cache.get();
+    }
+
+    /**
+     * The cache holds the records of this bucket, which are instances of its type, as persistent objects.
+     */
+    @SuppressWarnings("unchecked")
+    private T asRecord(final PersistentObject object) {
+        return (T) object;
+    }
+
+    private void replaceCache() {
+
+        synchronized (cache_lock) {
+            object_cache.set(newCache(cache_size));
+        }
+    }
+
+    private void removeFromCache(final Iterable<Long> ids) {
+
+        synchronized (cache_lock) {
+            cache().invalidateAll(ids);
+        }
+    }
+
     private LoadingCache<Long, PersistentObject> newCache(final int cacheSize) {
         return CacheBuilder.newBuilder()
                 .maximumSize(cacheSize)
@@ -182,23 +377,68 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
             if (nodes.isEmpty())
                 throw new BucketException("Did not find object with id: " + storr_id + " in " + bucket_name);
 
-            final Map<String, Object> properties = nodes.get(0).asMap();
+            return newInstance(storr_id, nodes.get(0).asMap());
+        }
+    }
 
-            try {
-                //  No relevant constructor.
-                if (bucket_type == null) return new DynamicLXP(storr_id, properties, this);
+    private PersistentObject newInstance(final long storr_id, final Map<String, Object> properties) throws BucketException {
 
-                final Constructor<?> constructor = bucket_type.getConstructor(long.class, Map.class, IBucket.class);
-                return (PersistentObject) constructor.newInstance(storr_id, properties, this);
+        final PersistentObject instance = createInstance(storr_id, properties);
+
+        // Setting the fields from the stored properties does not count as a change.
+        if (instance instanceof LXP) ((LXP) instance).markClean();
+        return instance;
+    }
+
+    private PersistentObject createInstance(final long storr_id, final Map<String, Object> properties) throws BucketException {
+
+        //  No relevant constructor.
+        if (bucket_type == null) {
+            try {
+                return new DynamicLXP(storr_id, properties, this);
 
             } catch (final PersistentObjectException e) {
                 throw new BucketException("Could not create new LXP for object with id: " + storr_id);
-            } catch (final NoSuchMethodException e) {
-                throw new BucketException("Error in reflective constructor call: class <" + bucket_type.getName() + "> must implement a constructor with the following signature: Constructor( long persistent_object_id, Map properties, IBucket bucket )");
-            } catch (final IllegalAccessException | InstantiationException | InvocationTargetException e) {
-                throw new BucketException("Error in reflective call of constructor in class " + bucket_type.getName() + ": " + e.getMessage());
             }
         }
+
+        return RecordFactory.forClass(bucket_type).newInstance(storr_id, properties, this);
+    }
+
+    /**
+     * Returns the record stored in the given node, using the cached instance if there is one.
+     *
+     * @param node          a member node of this bucket
+     * @param cache_records whether a newly created instance should be added to the object cache
+     * @return the record
+     * @throws BucketException if the record cannot be created
+     */
+    T getObject(final Node node, final boolean cache_records) throws BucketException {
+
+        final long storr_id = node.get(LXP.STORR_ID_KEY).asLong();
+
+        final T cached = asRecord(cache().getIfPresent(storr_id));
+        if (cached != null) return cached;
+
+        final T record = asRecord(newInstance(storr_id, node.asMap()));
+        if (cache_records) cache().put(storr_id, record);
+
+        return record;
+    }
+
+    /**
+     * @return a new session whose results are fetched from the server in chunks of the bucket's fetch size
+     */
+    Session getNewFetchSession() {
+        return bridge.getNewSession(fetch_size);
+    }
+
+    /**
+     * @param session the session in which to run the query
+     * @return a cursor over the member nodes of this bucket
+     */
+    Result getMembers(final Session session) {
+        return session.run(GET_LXPS_QUERY, Values.parameters("bucket_id", neo_id));
     }
 
     public T getObjectById(final long id) throws BucketException {
@@ -206,14 +446,52 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
         try {
             // this is safe since this.contains(id) and also the cache contains the object.
 
-            //noinspection unchecked
-            return (T) object_cache.get(id, () -> load(id));
+            return asRecord(cache().get(id, () -> load(id)));
 
         } catch (final ExecutionException e) {
             throw new BucketException("Cannot get object by id: " + id, e);
         }
     }
 
+    @Override
+    public List<T> getObjectsByIds(final Collection<Long> ids) throws BucketException {
+
+        final Map<Long, T> found = new HashMap<>();
+        final List<Long> misses = new ArrayList<>();
+
+        for (final Long id : ids) {
+
+            if (id == null) throw new BucketException("Cannot get object by null id");
+
+            final T cached = asRecord(cache().getIfPresent(id));
+            if (cached != null) found.put(id, cached);
+            else misses.add(id);
+        }
+
+        for (int i = 0; i < misses.size(); i += batch_size) {
+            loadObjects(misses.subList(i, Math.min(i + batch_size, misses.size())), found);
+        }
+
+        final List<T> result = new ArrayList<>(ids.size());
+        for (final long id : ids) {
+            result.add(found.get(id));
+        }
+        return result;
+    }
+
+    private void loadObjects(final List<Long> ids, final Map<Long, T> found) throws BucketException {
+
+        try (final Session session = bridge.getNewSession()) {
+
+            final Result result = session.run(GET_LXPS_BY_STORR_IDS_QUERY, Values.parameters("bucket_id", neo_id, "storr_ids", ids));
+
+            while (result.hasNext()) {
+                final T record = getObject(result.next().get("l").asNode(), true);
+                found.put(record.getId(), record);
+            }
+        }
+    }
+
     @Override
     public IRepository getRepository() {
         return repository;
@@ -234,34 +512,36 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
     public boolean contains(final long storr_id) {
 
         // If auto-commit is off, the id may be present only in the cache, if creation hasn't yet been committed.
-        if (!store.getTransactionManager().isAutoCommitEnabled() && object_cache.getIfPresent(storr_id) != null)
+        if (!store.getTransactionManager().isAutoCommitEnabled() && cache().getIfPresent(storr_id) != null)
             return true;
 
         try (Session session = bridge.getNewSession()) {
 
             final Result result = session.run(LXP_EXISTS_QUERY, Values.parameters("id", storr_id));
-            return !result.list(r -> r.get("o").asNode()).isEmpty();
+            return result.single().get("exists").asBoolean();
         }
     }
 
     public IInputStream<T> getInputStream() throws BucketException {
+        return getInputStream(true);
+    }
 
-        try {
-            return new NeoBackedInputStream<>(this);
-
-        } catch (final IOException e) {
-            throw new BucketException(e);
-        }
+    public IInputStream<T> getInputStream(final boolean cache_records) throws BucketException {
+        return new NeoBackedInputStream<>(this, cache_records);
     }
 
     public IOutputStream<T> getOutputStream() {
         return new NeoBackedOutputStream<>(this);
     }
 
+    public IOutputStream<T> getBufferedOutputStream(final int queue_capacity) {
+        return new NeoBackedBufferedOutputStream<>(this, queue_capacity);
+    }
+
     /**
      * @return the ids of records that are in this bucket
      */
-    public synchronized List<Long> getObjectIds() {
+    public List<Long> getObjectIds() {
 
         try (Session session = bridge.getNewSession()) {
 
@@ -279,13 +559,33 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
 
         checkPersistencyConditions(record);
 
-        object_cache.put(record.getId(), record);
+        cache().put(record.getId(), record);
         writeLXP(record);
     }
 
+    @Override
+    public void makePersistent(final Collection<T> records) throws BucketException {
+
+        final List<T> batch = new ArrayList<>(Math.min(records.size(), batch_size));
+
+        for (final T record : records) {
+
+            batch.add(record);
+            if (batch.size() == batch_size) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) writeBatch(batch);
+    }
+
     private void checkPersistencyConditions(LXP record) throws BucketException {
 
         if (contains(record.getId())) throw new BucketException("records may not be overwritten - use update");
+        checkTypeConsistency(record);
+    }
+
+    private void checkTypeConsistency(final LXP record) throws BucketException {
 
         if (type_label_id != -1) {
 
@@ -304,45 +604,126 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
     }
 
     @Override
-    public synchronized void update(final T record_to_update) throws BucketException {
+    public void update(final T record_to_update) throws BucketException {
+
+        final Lock lock = update_locks.get(record_to_update.getId());
+        lock.lock();
+
+        try {
+            updateRecord(record_to_update);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateRecord(final T record_to_update) throws BucketException {
+
+        // Nothing to write if the record has not changed since it was loaded from or written to this bucket.
+        if (record_to_update.$$$bucket$$$bucket$$$ == this && !record_to_update.isDirty()) return;
 
         if (!contains(record_to_update.getId())) throw new BucketException("bucket does not contain specified id");
 
-        final String query = buildUpdateQuery(record_to_update);
-        final boolean auto_commit = store.getTransactionManager().isAutoCommitEnabled();
+        final boolean replace = replacesAllProperties(record_to_update);
+        final Map<String, Value> properties = propertiesToUpdate(record_to_update, replace);
 
-        final ITransaction transaction = auto_commit ? store.getTransactionManager().beginTransaction() : getCurrentStorrTransaction();
+        final ITransaction transaction = getWriteTransaction();
+        if (transaction != null) transaction.add(this, record_to_update);
 
-        transaction.add(this, record_to_update);
-        transaction.getNeoTransaction().run(query, Values.parameters("storr_id", record_to_update.getId()));
+        if (replace)
+            write(transaction, (tx, retry) -> tx.run(REPLACE_LXP_QUERY, Values.parameters("storr_id", record_to_update.getId(), "properties", properties)).consume());
+        else
+            write(transaction, (tx, retry) -> tx.run(UPDATE_LXP_QUERY, Values.parameters("storr_id", record_to_update.getId(), "delta", properties)).consume());
 
-        if (auto_commit) transaction.commit();
+        record_to_update.markClean();
     }
 
-    private String buildUpdateQuery(final T record_to_update) {
+    @Override
+    public void update(final Collection<T> records) throws BucketException {
+
+        final Map<Long, T> batch = new LinkedHashMap<>();
 
-        final StringBuilder query = new StringBuilder(UPDATE_LXP_PARTIAL_QUERY_BY_STORR_ID);
+        for (final T record : records) {
 
-        query.append(record_to_update.getId());
-        appendProperties(query, record_to_update.serializeFieldsToMap());
-        query.append("}");
+            // As for a single update, unchanged records belonging to the bucket need not be written.
+            if (record.$$$bucket$$$bucket$$$ == this && !record.isDirty()) continue;
 
-        return query.toString();
+            batch.put(record.getId(), record);
+            if (batch.size() == batch_size) {
+                updateBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) updateBatch(batch);
     }
 
-    private void appendProperties(final StringBuilder query, final Map<String, Object> properties) {
+    /**
+     * Updates a batch of records in a single statement, which fails unless every record is a member of this bucket.
+     */
+    private void updateBatch(final Map<Long, T> batch) throws BucketException {
+
+        // Striped.bulkGet returns the locks in a fixed order, so concurrent batches cannot deadlock.
+        final List<Lock> locks = new ArrayList<>();
+        update_locks.bulkGet(batch.keySet()).forEach(locks::add);
+
+        for (final Lock lock : locks) {
+            lock.lock();
+        }
+
+        try {
+            writeUpdateBatch(batch);
 
-        for (Map.Entry<String, Object> entry : properties.entrySet()) {
-            query.append(", ");
-            query.append(entry.getKey());
-            query.append(" : ");
-            query.append(toSerializationFormat(entry.getValue()));
+        } finally {
+            for (final Lock lock : locks) {
+                lock.unlock();
+            }
         }
     }
 
-    private String toSerializationFormat(final Object value) {
+    private void writeUpdateBatch(final Map<Long, T> batch) throws BucketException {
+
+        final List<Map<String, Object>> rows = new ArrayList<>(batch.size());
 
-        return value instanceof String ? ("\"" + value + "\"") : value.toString();
+        for (final T record : batch.values()) {
+            final boolean replace = replacesAllProperties(record);
+            rows.add(Map.of(LXP.STORR_ID_KEY, record.getId(), "replace", replace, "properties", propertiesToUpdate(record, replace)));
+        }
+
+        final ITransaction transaction = getWriteTransaction();
+        if (transaction != null) {
+            for (final T record : batch.values()) {
+                transaction.add(this, record);
+            }
+        }
+
+        write(transaction, (tx, retry) -> {
+            final Result result = tx.run(UPDATE_LXP_BATCH_QUERY, Values.parameters("bucket_id", neo_id, "rows", rows));
+            if (result.single().get("updated").asLong() != rows.size())
+                throw new BucketException("bucket does not contain specified id");
+            return null;
+        });
+
+        for (final T record : batch.values()) {
+            record.markClean();
+        }
+        cache().putAll(batch);
+    }
+
+    /**
+     * Only the changes to a record loaded from this bucket are known to be all that differs from the stored record.
+     * Any other record, such as a fresh one given an existing id, replaces all of the stored properties.
+     */
+    private boolean replacesAllProperties(final T record) {
+        return record.$$$bucket$$$bucket$$$ != this;
+    }
+
+    private Map<String, Value> propertiesToUpdate(final T record, final boolean replace) {
+
+        if (!replace) return record.serializeDirtyFieldsToValues();
+
+        final Map<String, Value> properties = record.serializeFieldsToValues();
+        properties.put(LXP.STORR_ID_KEY, Values.value(record.getId()));
+        return properties;
     }
 
     private void writeLXP(final LXP record_to_write) throws BucketException {
@@ -351,31 +732,127 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
 
         final Class<?> c = record_to_write.getMetaData().metadata_class;
 
-        final Map<String, Object> properties = record_to_write.serializeFieldsToMap();
-        properties.put("STORR_ID", record_to_write.getId());
+        final Map<String, Value> properties = record_to_write.serializeFieldsToValues();
+        properties.put(LXP.STORR_ID_KEY, Values.value(record_to_write.getId()));
 
-        final boolean auto_commit = store.getTransactionManager().isAutoCommitEnabled();
-        final Transaction tx = getTransaction(auto_commit);
-        runWriteLXPQuery(record_to_write, properties, c, tx);
-        if (auto_commit) tx.commit();
+        writeMembers((tx, retry) -> {
+            // An earlier attempt may have written the record without this being acknowledged.
+            if (!retry || countMembers(tx, List.of(record_to_write.getId())) == 0) runWriteLXPQuery(record_to_write, properties, c, tx);
+            return 1L;
+        });
+
+        record_to_write.markClean();
     }
 
-    private Transaction getTransaction(final boolean auto_commit) throws BucketException {
+    /**
+     * Writes a batch of records in a single statement, in which the existence check is also performed, so the batch is
+     * either written in its entirety or not at all. If it is not written, the records are left unassigned to the bucket.
+     */
+    private void writeBatch(final List<T> batch) throws BucketException {
+
+        final boolean auto_commit = store.getTransactionManager().isAutoCommitEnabled();
+        final Map<Class<?>, List<Map<String, Value>>> rows_by_class = new LinkedHashMap<>();
+        final Set<Long> ids = new HashSet<>();
+        final List<IBucket<?>> previous_buckets = new ArrayList<>(batch.size());
+
+        try {
+            for (final T record : batch) {
+
+                // If auto-commit is off, records created earlier in the transaction are only visible in the cache.
+                if (!ids.add(record.getId()) || (!auto_commit && cache().getIfPresent(record.getId()) != null))
+                    throw new BucketException("records may not be overwritten - use update");
 
-        return auto_commit ? bridge.getNewSession().beginTransaction() : getCurrentStorrTransaction().getNeoTransaction();
+                checkTypeConsistency(record);
+
+                previous_buckets.add(record.$$$bucket$$$bucket$$$);
+                record.$$$bucket$$$bucket$$$ = this;
+
+                final Map<String, Value> properties = record.serializeFieldsToValues();
+                properties.put(LXP.STORR_ID_KEY, Values.value(record.getId()));
+                rows_by_class.computeIfAbsent(record.getMetaData().metadata_class, k -> new ArrayList<>()).add(properties);
+            }
+
+            writeMembers((tx, retry) -> {
+                // As the batch is written in one statement, an earlier attempt either wrote all of it or none.
+                if (!retry || countMembers(tx, ids) != ids.size()) runWriteBatchQuery(rows_by_class, ids, tx);
+                return (long) ids.size();
+            });
+
+        } catch (final BucketException | RuntimeException e) {
+
+            for (int i = 0; i < previous_buckets.size(); i++) {
+                batch.get(i).$$$bucket$$$bucket$$$ = previous_buckets.get(i);
+            }
+            throw e;
+        }
+
+        for (final T record : batch) {
+            record.markClean();
+            cache().put(record.getId(), record);
+        }
     }
 
-    private ITransaction getCurrentStorrTransaction() throws BucketException {
+    private void runWriteBatchQuery(final Map<Class<?>, List<Map<String, Value>>> rows_by_class, final Set<Long> ids, final SimpleQueryRunner tx) throws BucketException {
+
+        final StringBuilder query = new StringBuilder(CREATE_LXP_BATCH_QUERY_PREFIX);
+        final StringJoiner created = new StringJoiner(" + ", "RETURN ", " AS created");
+        final Map<String, Object> parameters = new HashMap<>();
+
+        parameters.put("bucket_id", neo_id);
+        parameters.put("storr_ids", ids);
 
-        final ITransaction storr_transaction = store.getTransactionManager().getTransaction(Long.toString(Thread.currentThread().threadId()));
+        int i = 0;
+        for (final Map.Entry<Class<?>, List<Map<String, Value>>> entry : rows_by_class.entrySet()) {
 
-        if (storr_transaction == null || !storr_transaction.isActive()) {
-            throw new BucketException("No transactional context specified");
+            final Class<?> c = entry.getKey();
+            query.append(String.format(CREATE_LXP_BATCH_SUBQUERY, i, c != null ? ":" + c.getSimpleName() : ""));
+            created.add("created" + i);
+            parameters.put("rows" + i, entry.getValue());
+            i++;
         }
-        return storr_transaction;
+        query.append(created);
+
+        final Result result = tx.run(query.toString(), parameters);
+
+        // No row is returned if any of the ids is already in use.
+        if (!result.hasNext() || result.next().get("created").asLong() != ids.size())
+            throw new BucketException("records may not be overwritten - use update");
+    }
+
+    /**
+     * @return null if auto-commit is enabled for the calling thread, and otherwise its current transaction
+     * @throws BucketException if auto-commit is disabled and there is no current transaction
+     */
+    private ITransaction getWriteTransaction() throws BucketException {
+
+        if (store.getTransactionManager().isAutoCommitEnabled()) return null;
+
+        final ITransaction transaction = store.getTransactionManager().getCurrentTransaction();
+        if (transaction == null) throw new BucketException("No transactional context specified");
+
+        return transaction;
+    }
+
+    private <R> R write(final NeoDbCypherBridge.WriteWork<R, BucketException> work) throws BucketException {
+
+        return write(getWriteTransaction(), work);
     }
 
-    private void runWriteLXPQuery(final LXP record_to_write, final Map<String, Object> properties, final Class<?> c, final Transaction tx) throws BucketException {
+    /**
+     * Runs the given work in the given transaction or, if it is null, in a transaction of its own, which is retried if
+     * it fails transiently. An explicit transaction is not retried, since the earlier work done in it would be lost.
+     */
+    private <R> R write(final ITransaction transaction, final NeoDbCypherBridge.WriteWork<R, BucketException> work) throws BucketException {
+
+        return transaction != null ? transaction.execute(work) : bridge.executeWrite(work);
+    }
+
+    private long countMembers(final SimpleQueryRunner tx, final Collection<Long> storr_ids) {
+
+        return tx.run(COUNT_MEMBERS_WITH_IDS_QUERY, Values.parameters("bucket_id", neo_id, "storr_ids", storr_ids)).single().get("found").asLong();
+    }
+
+    private void runWriteLXPQuery(final LXP record_to_write, final Map<String, Value> properties, final Class<?> c, final SimpleQueryRunner tx) throws BucketException {
 
         final String query = c != null ? buildParameterisedWriteLXPQuery(c) : CREATE_LXP_QUERY;
         final Result result = tx.run(query, Values.parameters("props", properties));
@@ -392,30 +869,104 @@ public class NeoBackedBucket<T extends LXP> implements IBucket<T> {
         return "CREATE (n:STORR_LXP:" + c.getSimpleName() + " $props) RETURN n";
     }
 
-    public synchronized int size() {
+    public int size() {
+
+        if (!size_cache_enabled) return (int) countMembers();
+
+        final long generation;
+        synchronized (size_lock) {
+            if (cached_size >= 0) return (int) cached_size;
+            generation = size_changes_in_progress == 0 ? size_generation : -1;
+        }
+
+        final long size = countMembers();
+
+        // Only cached if membership has not changed, and no change has started, since counting began.
+        if (generation >= 0) {
+            synchronized (size_lock) {
+                if (generation == size_generation) cached_size = size;
+            }
+        }
+        return (int) size;
+    }
+
+    private long countMembers() {
 
         try (Session session = bridge.getNewSession()) {
 
-            final Result result = session.run(GET_LXPS_QUERY, Values.parameters("bucket_id", neo_id));
-            return result.list(r -> r.get("l")).size();
+            final Result result = session.run(COUNT_LXPS_QUERY, Values.parameters("bucket_id", neo_id));
+            return result.single().get("size").asLong();
         }
     }
 
-    public synchronized void invalidateCache() {
+    public void invalidateCache() {
+
+        forgetCachedSize();
 
         // Called by watcher service.
-        object_cache = newCache(cache_size); // There may be extant references to these objects in the heap which should be invalidated.
+        replaceCache(); // There may be extant references to these objects in the heap which should be invalidated.
         // TODO is comment above a TODO?
     }
 
     @Override
     public void delete(final long object_id) throws BucketException {
 
-        final boolean auto_commit = store.getTransactionManager().isAutoCommitEnabled();
-        final Transaction tx = getTransaction(auto_commit);
-        tx.run(DELETE_OBJECT_QUERY, Values.parameters("bucket_id", neo_id, "to_delete_id", object_id));
-        if (auto_commit) tx.commit();
+        writeMembers((tx, retry) ->
+                removedCount(tx.run(DELETE_OBJECT_QUERY, Values.parameters("bucket_id", neo_id, "to_delete_id", object_id)), retry));
+
+        removeFromCache(List.of(object_id));
+    }
+
+    @Override
+    public void delete(final Collection<Long> object_ids) throws BucketException {
+
+        final List<Long> batch = new ArrayList<>(Math.min(object_ids.size(), batch_size));
+
+        for (final long object_id : object_ids) {
+
+            batch.add(object_id);
+            if (batch.size() == batch_size) {
+                deleteBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) deleteBatch(batch);
+    }
+
+    private void deleteBatch(final List<Long> batch) throws BucketException {
+
+        writeMembers((tx, retry) ->
+                removedCount(tx.run(DELETE_OBJECTS_QUERY, Values.parameters("bucket_id", neo_id, "to_delete_ids", batch)), retry));
+
+        removeFromCache(batch);
+    }
+
+    /**
+     * @return the change in membership from deleting records, or null if an earlier attempt may have deleted some of them
+     */
+    private static Long removedCount(final Result result, final boolean retry) {
+
+        final long deleted = result.single().get("deleted").asLong();
+        return retry ? null : -deleted;
+    }
+
+    @Override
+    public void truncate() throws BucketException {
 
-        object_cache.invalidate(object_id);
+        truncate(deleted -> {});
+    }
+
+    @Override
+    public void truncate(final LongConsumer progress_listener) throws BucketException {
+
+        startSizeChange(null);
+
+        try {
+            bridge.deleteInBatches(DELETE_MEMBERS_QUERY, Map.of("bucket_id", neo_id), batch_size, progress_listener);
+
+        } finally {
+            endSizeChange(null, null);
+            invalidateCache();
+        }
     }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.impl;
+
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.interfaces.IOutputStream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An output stream that decouples the producer of records from the latency of the store.
+ * Records are collected in a bounded queue, blocking the producer when it is full, and written to the
+ * bucket in batches of up to the bucket's batch size by a background writer thread.
+ * The writer is started when a record is added and exits once the queue has been empty for a short interval,
+ * so a stream holds no thread while idle and the records of a stream that is never closed are still written.
+ * Failures to write are only reported by {@link #flush()} and {@link #close()}, so the stream should be closed,
+ * for example with try-with-resources.
+ * The writer commits each batch in a transaction of its own, so records cannot be added while auto-commit
+ * is disabled for the calling thread.
+ */
+public class NeoBackedBufferedOutputStream<T extends PersistentObject> extends BucketBackedAbstractStream<T> implements IOutputStream<T> {
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final BlockingQueue<T> queue;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private final Object pending_lock = new Object();
+    private long pending = 0;                  // records added but not yet written or discarded, guarded by pending_lock
+    private Thread writer = null;              // null when idle, guarded by pending_lock
+    private volatile boolean closed = false;
+
+    // Held for reading while a record is queued, and for writing while closing, so no record is queued after the writer stops.
+    private final ReadWriteLock close_lock = new ReentrantReadWriteLock();
+
+    public NeoBackedBufferedOutputStream(final IBucket<T> bucket, final int queue_capacity) {
+
+        super(bucket);
+
+        queue = new ArrayBlockingQueue<>(queue_capacity);
+    }
+
+    @Override
+    public void add(final T record) throws BucketException {
+
+        if (!bucket.getRepository().getStore().getTransactionManager().isAutoCommitEnabled())
+            throw new BucketException("Buffered output stream cannot be used within a transaction");
+
+        final Lock lock = close_lock.readLock();
+        lock.lock();
+
+        try {
+            checkUsable();
+
+            synchronized (pending_lock) {
+                pending++;
+            }
+
+            try {
+                queue.put(record);
+
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                recordsDone(1);
+                throw new BucketException(e);
+            }
+
+            startWriterIfIdle();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(final Collection<T> records) throws BucketException {
+
+        for (final T record : records) {
+            add(record);
+        }
+    }
+
+    @Override
+    public void flush() throws BucketException {
+
+        synchronized (pending_lock) {
+
+            while (pending > 0 && failure.get() == null) {
+                try {
+                    pending_lock.wait();
+
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BucketException(e);
+                }
+            }
+        }
+        reportFailure();
+    }
+
+    @Override
+    public void close() throws BucketException {
+
+        final Lock lock = close_lock.writeLock();
+        lock.lock();
+
+        try {
+            if (closed) return;
+            closed = true;
+
+        } finally {
+            lock.unlock();
+        }
+
+        final Thread last_writer;
+        synchronized (pending_lock) {
+            last_writer = writer;
+        }
+
+        try {
+            // No record can be added now, so the writer exits once it has written those queued.
+            if (last_writer != null) last_writer.join();
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BucketException(e);
+        }
+        reportFailure();
+    }
+
+    private void startWriterIfIdle() {
+
+        synchronized (pending_lock) {
+
+            if (writer == null) {
+                writer = new Thread(this::writeRecords, "storr-writer-" + bucket.getName());
+                writer.start();
+            }
+        }
+    }
+
+    private void writeRecords() {
+
+        final List<T> batch = new ArrayList<>();
+
+        while (true) {
+
+            try {
+                final T first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+
+                    // Checked under the lock taken by producers after queueing a record, so none is left unwritten.
+                    synchronized (pending_lock) {
+                        if (queue.isEmpty()) {
+                            writer = null;
+                            return;
+                        }
+                    }
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, bucket.getBatchSize() - 1);
+
+                // Once a write has failed the remaining records are discarded, so that the producer is not blocked.
+                if (failure.get() == null) bucket.makePersistent(batch);
+
+            } catch (final InterruptedException | BucketException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+
+            } finally {
+                recordsDone(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void recordsDone(final int count) {
+
+        synchronized (pending_lock) {
+            pending -= count;
+            pending_lock.notifyAll();
+        }
+    }
+
+    private void checkUsable() throws BucketException {
+
+        if (closed) throw new BucketException("Stream has been closed");
+        reportFailure();
+    }
+
+    private void reportFailure() throws BucketException {
+
+        final Exception e = failure.get();
+        if (e != null) throw new BucketException("Buffered write failed", e);
+    }
+}
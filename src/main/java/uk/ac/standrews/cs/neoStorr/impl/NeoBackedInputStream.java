@@ -16,43 +16,116 @@
  */
 package uk.ac.standrews.cs.neoStorr.impl;
 
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
-import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
 import uk.ac.standrews.cs.neoStorr.interfaces.IInputStream;
 
-import java.io.IOException;
+import java.lang.ref.Cleaner;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class NeoBackedInputStream<T extends PersistentObject> implements IInputStream<T> {
+/**
+ * An input stream over the records of a bucket.
+ * Each iterator streams the bucket's member nodes through a single query, pulling them from the server in chunks
+ * of the bucket's fetch size, and builds records directly from the returned nodes.
+ * An iterator holds its session until it is exhausted or the stream is closed; streams whose iterators may be
+ * abandoned before the end should be closed, for example with try-with-resources. The session of an iterator that is
+ * abandoned in a stream that is never closed is closed only once the iterator has been garbage collected.
+ */
+public class NeoBackedInputStream<T extends LXP> implements IInputStream<T> {
+
+    // Closes the sessions of iterators that are abandoned in streams that are never closed.
+    private static final Cleaner CLEANER = Cleaner.create();
 
-    private final IBucket<T> bucket;
+    private final NeoBackedBucket<T> bucket;
+    private final boolean cache_records;
+    private final Set<Cleaner.Cleanable> open_cursors = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
 
-    NeoBackedInputStream(final IBucket<T> bucket) throws IOException {
+    NeoBackedInputStream(final NeoBackedBucket<T> bucket, final boolean cache_records) {
         this.bucket = bucket;
+        this.cache_records = cache_records;
     }
 
     public Iterator<T> iterator() {
+        return new RecordIterator();
+    }
+
+    /**
+     * Closes the sessions of the iterators over this stream that have not been exhausted.
+     * Those iterators, and any obtained afterwards, cannot be used further.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+
+        for (final Cleaner.Cleanable cursor : open_cursors) {
+            cursor.clean();
+        }
+        open_cursors.clear();
+    }
+
+    private class RecordIterator implements Iterator<T> {
+
+        private Cursor cursor = null;
+        private Cleaner.Cleanable cleanable = null;
+        private boolean exhausted = false;
 
-        return new Iterator<T>() {
+        @Override
+        public boolean hasNext() {
 
-            private final Iterator<Long> oid_iterator = bucket.getObjectIds().iterator();
+            if (exhausted) return false;
+            if (closed) throw new IllegalStateException("Input stream has been closed");
 
-            @Override
-            public boolean hasNext() {
-                return oid_iterator.hasNext();
+            if (cursor == null) {
+                final Session session = bucket.getNewFetchSession();
+                cursor = new Cursor(session, bucket.getMembers(session));
+                cleanable = CLEANER.register(this, cursor);
+                open_cursors.add(cleanable);
             }
 
-            @Override
-            public T next() {
+            if (cursor.result.hasNext()) return true;
 
-                try {
-                    return bucket.getObjectById(oid_iterator.next());
+            exhausted = true;
+            open_cursors.remove(cleanable);
+            cleanable.clean();
+            return false;
+        }
 
-                } catch (BucketException e) {
-                    throw new NoSuchElementException(e.getMessage());
-                }
+        @Override
+        public T next() {
+
+            if (!hasNext()) throw new NoSuchElementException();
+
+            try {
+                return bucket.getObject(cursor.result.next().get("l").asNode(), cache_records);
+
+            } catch (BucketException e) {
+                throw new NoSuchElementException(e.getMessage());
             }
-        };
+        }
+    }
+
+    /**
+     * The session and result backing an iterator; must not refer to the iterator so that it can be cleaned.
+     */
+    private static class Cursor implements Runnable {
+
+        private final Session session;
+        private final Result result;
+
+        Cursor(final Session session, final Result result) {
+            this.session = session;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            session.close();
+        }
     }
 }
@@ -20,6 +20,8 @@ import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
 import uk.ac.standrews.cs.neoStorr.interfaces.IOutputStream;
 
+import java.util.Collection;
+
 /**
  * Created by al on 28/04/2014.
  */
@@ -33,4 +35,9 @@ public class NeoBackedOutputStream<T extends PersistentObject> extends BucketBac
     public void add(final T record) throws BucketException {
         bucket.makePersistent(record);
     }
+
+    @Override
+    public void addAll(final Collection<T> records) throws BucketException {
+        bucket.makePersistent(records);
+    }
 }
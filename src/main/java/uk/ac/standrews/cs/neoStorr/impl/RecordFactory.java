@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.impl;
+
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+/**
+ * Creates instances of a persistent class from their stored properties.
+ * The class's constructor( long persistent_object_id, Map properties, IBucket bucket ) is looked up once per class
+ * and then invoked through a method handle, so loading records does not repeat the reflective lookup.
+ */
+final class RecordFactory {
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(void.class, long.class, Map.class, IBucket.class);
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(PersistentObject.class, long.class, Map.class, IBucket.class);
+
+    private static final ClassValue<RecordFactory> FACTORIES = new ClassValue<>() {
+
+        @Override
+        protected RecordFactory computeValue(final Class<?> record_class) {
+            return new RecordFactory(record_class);
+        }
+    };
+
+    private final Class<?> record_class;
+    private final MethodHandle constructor;  // null if the class has no accessible constructor with the required signature
+
+    private RecordFactory(final Class<?> record_class) {
+
+        this.record_class = record_class;
+        this.constructor = findConstructor(record_class);
+    }
+
+    static RecordFactory forClass(final Class<?> record_class) {
+
+        return FACTORIES.get(record_class);
+    }
+
+    PersistentObject newInstance(final long storr_id, final Map<String, Object> properties, final IBucket<?> bucket) throws BucketException {
+
+        if (constructor == null)
+            throw new BucketException("Error in reflective constructor call: class <" + record_class.getName() + "> must implement a constructor with the following signature: Constructor( long persistent_object_id, Map properties, IBucket bucket )");
+
+        try {
+            return (PersistentObject) constructor.invokeExact(storr_id, (Map) properties, bucket);
+
+        } catch (final PersistentObjectException e) {
+            throw new BucketException("Could not create new LXP for object with id: " + storr_id);
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new BucketException("Error in reflective call of constructor in class " + record_class.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static MethodHandle findConstructor(final Class<?> record_class) {
+
+        try {
+            return MethodHandles.publicLookup().findConstructor(record_class, CONSTRUCTOR_TYPE).asType(FACTORY_TYPE);
+
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.impl;
+
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
+import uk.ac.standrews.cs.neoStorr.interfaces.IReferenceType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The reference fields of a static LXP type, compiled once per type from its type rep.
+ * Each reference field has a slot and a method handle that turns the serialised form of the reference into an
+ * {@link LXPReference}: the static makeRef(String) method of the referenced class if it declares one, otherwise the
+ * {@link LXPReference#LXPReference(String)} constructor. The referenced class is found in the {@link TypeFactory}
+ * class registry.
+ */
+final class ReferenceFixUp {
+
+    private static final String REF_TYPE_PREFIX = "STOREREF[";
+    private static final String REF_TYPE_SUFFIX = "]";
+    private static final String MAKE_REF_METHOD_NAME = "makeRef";
+
+    private static final MethodType MAKE_REF_TYPE = MethodType.methodType(LXPReference.class, String.class);
+    private static final MethodHandle DEFAULT_MAKE_REF;
+
+    static {
+        try {
+            DEFAULT_MAKE_REF = MethodHandles.lookup().findConstructor(LXPReference.class, MethodType.methodType(void.class, String.class)).asType(MAKE_REF_TYPE);
+
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int[] slots;
+    private final String[] referenced_types;
+    private final MethodHandle[] make_refs;  // resolved on first use
+
+    private ReferenceFixUp(final int[] slots, final String[] referenced_types) {
+
+        this.slots = slots;
+        this.referenced_types = referenced_types;
+        make_refs = new MethodHandle[slots.length];
+    }
+
+    static ReferenceFixUp compile(final LXPMetaData metadata) {
+
+        final IReferenceType type = metadata.getType();
+        final LXP type_rep = type.getRep();
+
+        final List<Integer> slots = new ArrayList<>();
+        final List<String> referenced_types = new ArrayList<>();
+
+        for (final String label : type.getLabels()) {
+
+            final Object rep = type_rep.get(label);
+            if (rep instanceof String && isReferenceTypeRep((String) rep) && metadata.containsLabel(label)) {
+
+                slots.add(metadata.getSlot(label));
+                referenced_types.add(extractRefType((String) rep));
+            }
+        }
+
+        return new ReferenceFixUp(slots.stream().mapToInt(Integer::intValue).toArray(), referenced_types.toArray(new String[0]));
+    }
+
+    /**
+     * Replaces the serialised references in the given record with reference objects.
+     *
+     * @param record a record whose properties have just been initialised from storage
+     * @throws PersistentObjectException if a reference cannot be created
+     */
+    void apply(final StaticLXP record) throws PersistentObjectException {
+
+        for (int i = 0; i < slots.length; i++) {
+
+            final Object serialised = record.get(slots[i]);
+            if (serialised instanceof String) {
+
+                try {
+                    record.put(slots[i], (LXPReference) getMakeRef(i).invokeExact((String) serialised));
+
+                } catch (final Error e) {
+                    throw e;
+                } catch (final Throwable e) {
+                    throw new PersistentObjectException("Error creating reference from: " + serialised, e instanceof Exception ? (Exception) e : new RuntimeException(e));
+                }
+            }
+        }
+    }
+
+    private static boolean isReferenceTypeRep(final String rep) {
+
+        return rep.startsWith(REF_TYPE_PREFIX) && rep.endsWith(REF_TYPE_SUFFIX);
+    }
+
+    /**
+     * @param rep - a reference type rep of form STOREREF[Classname]
+     */
+    private static String extractRefType(final String rep) {
+
+        return rep.substring(REF_TYPE_PREFIX.length(), rep.length() - REF_TYPE_SUFFIX.length());
+    }
+
+    private MethodHandle getMakeRef(final int i) {
+
+        MethodHandle make_ref = make_refs[i];
+
+        if (make_ref == null) {
+
+            final Class<?> referenced_class = TypeFactory.getRegisteredClass(referenced_types[i]);
+
+            // If the referenced class has not been initialised yet, look again for the next record.
+            if (referenced_class == null) return DEFAULT_MAKE_REF;
+
+            make_ref = findMakeRef(referenced_class);
+            make_refs[i] = make_ref;
+        }
+
+        return make_ref;
+    }
+
+    private static MethodHandle findMakeRef(final Class<?> referenced_class) {
+
+        try {
+            final Method make_ref = referenced_class.getDeclaredMethod(MAKE_REF_METHOD_NAME, String.class);
+            return MethodHandles.publicLookup().unreflect(make_ref).asType(MAKE_REF_TYPE);
+
+        } catch (final NoSuchMethodException | IllegalAccessException | IllegalArgumentException | ClassCastException | WrongMethodTypeException e) {
+            // No accessible makeRef on the referenced class, so use a plain reference.
+            return DEFAULT_MAKE_REF;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package uk.ac.standrews.cs.neoStorr.impl;
 
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.Value;
 import org.neo4j.driver.types.Node;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
@@ -27,6 +28,8 @@ import uk.ac.standrews.cs.neoStorr.interfaces.IStore;
 import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
 
 import static org.neo4j.driver.Values.parameters;
 
@@ -43,15 +46,20 @@ public class Repository implements IRepository {
     private static final String ILLEGAL_CHARS = ILLEGAL_CHARS_MAC + ILLEGAL_CHARS_LINUX + ILLEGAL_CHARS_WINDOWS;
     public static final String LEGAL_CHARS_PATTERN = "[^" + ILLEGAL_CHARS + "]*";
 
+    static final long UNTYPED_BUCKET_LABEL = -1;
+
     private static final String MAKE_BUCKET_QUERY = "MATCH (r:STORR_REPOSITORY {name: $repo_name}) MERGE (r)-[c:STORR_CONTAINS]-(b:STORR_BUCKET {name:$bucket_name}) return b";
     private static final String BUCKET_EXISTS_QUERY = "MATCH (r:STORR_REPOSITORY {name: $repo_name})-[c:STORR_CONTAINS]-(b:STORR_BUCKET {name:$bucket_name}) return b";
     private static final String DELETE_BUCKET_QUERY = "MATCH (r:STORR_REPOSITORY {name: $repo_name})-[c:STORR_CONTAINS]-(b:STORR_BUCKET {name:$bucket_name}) DETACH DELETE b";
+    private static final String DELETE_BUCKET_MEMBERS_QUERY = "MATCH (r:STORR_REPOSITORY {name: $repo_name})-[c:STORR_CONTAINS]-(b:STORR_BUCKET {name:$bucket_name})-[m:STORR_MEMBER]-(l:STORR_LXP) WITH l LIMIT $batch_size DETACH DELETE l RETURN count(*) AS deleted";
+    private static final String BUCKET_TYPE_LABEL_QUERY = "MATCH (r:STORR_REPOSITORY {name: $repo_name})-[c:STORR_CONTAINS]-(b:STORR_BUCKET {name:$bucket_name}) return b.TYPE_LABEL_ID AS type_label_id";
     private static final String ALL_BUCKET_NAMES_QUERY = "MATCH (r:STORR_REPOSITORY {name: $repo_name})-[c:STORR_CONTAINS]-(b:STORR_BUCKET) return b.name";
 
     private final IStore store;
     private final String repository_name;
 
-    private final Map<String, NeoBackedBucket> bucket_cache;
+    private final HandleCache<NeoBackedBucket<?>> bucket_cache;
+    private final Map<String, Long> bucket_type_labels = new ConcurrentHashMap<>();
     private final NeoDbCypherBridge bridge;
 
     Repository(final IStore store, final String repository_name) throws RepositoryException {
@@ -63,14 +71,15 @@ public class Repository implements IRepository {
         this.store = store;
         this.bridge = store.getBridge();
         this.repository_name = repository_name;
-        bucket_cache = new HashMap<>();
+        bucket_cache = new HandleCache<>();
     }
 
     @Override
     public IBucket makeBucket(final String bucket_name) throws RepositoryException {
 
         makeBucketInNeo(bucket_name); // Throws exception if it already exists in Db
-        NeoBackedBucket bucket = new NeoBackedBucket(this, bucket_name, getNeoBucketIDFromDb(bucket_name));
+        final NeoBackedBucket<LXP> bucket = new NeoBackedBucket<>(this, bucket_name, getNeoBucketIDFromDb(bucket_name));
+        bucket.setMadeUntyped();
         bucket_cache.put(bucket_name, bucket);
         return bucket;
     }
@@ -93,12 +102,8 @@ public class Repository implements IRepository {
 
         if (bucketExists(bucket_name)) throw new RepositoryException("Repo: " + bucket_name + " already exists");
 
-        try (final Session session = bridge.getNewSession()) {
-            session.executeWrite(tx -> {
-                tx.run(MAKE_BUCKET_QUERY, parameters("repo_name", repository_name, "bucket_name", bucket_name)).consume();
-                return null;
-            });
-        }
+        // The query merges, so repeating it is safe.
+        bridge.executeWrite((tx, retry) -> tx.run(MAKE_BUCKET_QUERY, parameters("repo_name", repository_name, "bucket_name", bucket_name)).consume());
     }
 
     @Override
@@ -129,47 +134,90 @@ public class Repository implements IRepository {
     @Override
     public void deleteBucket(final String bucket_name) {
 
-        try (final Session session = bridge.getNewSession();) {
-            session.executeWrite(tx -> {
-                tx.run(DELETE_BUCKET_QUERY, parameters("repo_name", this.repository_name, "bucket_name", bucket_name)).consume();
-                return null;
-            });
-        }
-        bucket_cache.remove(bucket_name);
+        deleteBucket(bucket_name, deleted -> {});
     }
 
     @Override
-    public IBucket getBucket(final String bucket_name) throws RepositoryException {
+    public void deleteBucket(final String bucket_name, final LongConsumer progress_listener) {
 
-        final IBucket bucket = bucket_cache.get(bucket_name);
-        if (bucket != null) return bucket;
+        deleteBucketInBatches(bucket_name, progress_listener);
+    }
+
+    /**
+     * Deletes the members of the bucket in batches, each in its own transaction, and then the bucket itself.
+     *
+     * @param bucket_name the name of the bucket to be deleted
+     * @param progress_listener called with the number of members deleted so far after each batch
+     * @return the number of members deleted
+     */
+    long deleteBucketInBatches(final String bucket_name, final LongConsumer progress_listener) {
 
-        if (bucketExists(bucket_name)) return new NeoBackedBucket(this, bucket_name, getNeoBucketIDFromDb(bucket_name));
+        final NeoBackedBucket<?> bucket = bucket_cache.remove(bucket_name);
+        final int batch_size = bucket != null ? bucket.getBatchSize() : NeoBackedBucket.DEFAULT_BATCH_SIZE;
 
-        throw new RepositoryException("bucket does not exist with name: <" + bucket_name + ">");
+        try {
+            final long deleted = bridge.deleteInBatches(DELETE_BUCKET_MEMBERS_QUERY,
+                    Map.of("repo_name", repository_name, "bucket_name", bucket_name), batch_size, progress_listener);
+
+            bridge.executeWrite((tx, retry) -> tx.run(DELETE_BUCKET_QUERY, parameters("repo_name", this.repository_name, "bucket_name", bucket_name)).consume());
+            return deleted;
+
+        } finally {
+            if (bucket != null) bucket.invalidateCache();
+            bucket_type_labels.remove(bucket_name);
+        }
     }
 
     @Override
-    public <T extends LXP> IBucket<T> getBucket(final String bucket_name, final Class<T> bucketType) throws RepositoryException {
+    public IBucket getBucket(final String bucket_name) throws RepositoryException {
+
+        return getHandle(bucket_name);
+    }
 
-        final IBucket bucket = bucket_cache.get(bucket_name);
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends LXP> IBucket<T> getBucket(final String bucket_name, final Class<T> bucketType) throws RepositoryException {
 
-        if (bucket != null) {
-            if (((NeoBackedBucket) bucket).bucketTypeIsCorrect(bucketType)) return bucket;
+        // A handle looked up without a type is given the requested one if the store records no other type for the
+        // bucket, so there is only ever one handle per bucket.
+        final NeoBackedBucket<?> bucket = getHandle(bucket_name);
 
+        if (!bucket.bucketTypeIsCorrect(bucketType) && !bucket.assignBucketType(bucketType, getBucketTypeLabelId(bucket_name)))
             throw new RepositoryException("bucket: " + bucket_name + " is not of type: <" + bucketType.getName() + ">");
-        }
 
-        if (bucketExists(bucket_name)) {
+        return (IBucket<T>) bucket;
+    }
 
-            final NeoBackedBucket<T> neo_bucket = new NeoBackedBucket<>(this, bucket_name, getNeoBucketIDFromDb(bucket_name), bucketType);
-            if (!neo_bucket.persistentLabelIsCorrect())
-                throw new RepositoryException("bucket: " + bucket_name + " is not of type: <" + bucketType.getName() + ">");
+    /**
+     * Returns the cached handle for the bucket, creating and caching one if there is none.
+     * Only one thread creates a handle for the bucket; the others wait for it.
+     */
+    private NeoBackedBucket<?> getHandle(final String bucket_name) throws RepositoryException {
 
-            return neo_bucket;
-        }
+        return bucket_cache.getOrLoad(bucket_name, name -> {
 
-        throw new RepositoryException("bucket does not exist with name: <" + bucket_name + ">");
+            if (!bucketExists(name)) throw new RepositoryException("bucket does not exist with name: <" + name + ">");
+            return new NeoBackedBucket<LXP>(this, name, getNeoBucketIDFromDb(name));
+        });
+    }
+
+    @Override
+    public long getBucketTypeLabelId(final String bucket_name) throws RepositoryException {
+
+        final Long type_label_id = bucket_type_labels.get(bucket_name);
+        if (type_label_id != null) return type_label_id;
+
+        try (final Session s = bridge.getNewSession()) {
+
+            final Result result = s.run(BUCKET_TYPE_LABEL_QUERY, parameters("repo_name", repository_name, "bucket_name", bucket_name));
+
+            final List<Value> labels = result.list(r -> r.get("type_label_id"));
+            if (labels.isEmpty()) throw new RepositoryException("bucket does not exist with name: <" + bucket_name + ">");
+
+            final long label = labels.get(0).isNull() ? UNTYPED_BUCKET_LABEL : labels.get(0).asLong();
+            bucket_type_labels.put(bucket_name, label);
+            return label;
+        }
     }
 
     @Override
@@ -215,9 +263,13 @@ public class Repository implements IRepository {
 
         while (name_iterator.hasNext()) {
 
+            final String bucket_name = name_iterator.next();
+
             try {
-                IBucket<T> bucket = getBucket(name_iterator.next(), bucketType);
-                typed_buckets.add(bucket);
+                // Buckets made without a type are skipped rather than given this one.
+                if (getBucketTypeLabelId(bucket_name) != UNTYPED_BUCKET_LABEL) {
+                    typed_buckets.add(getBucket(bucket_name, bucketType));
+                }
 
             } catch (RepositoryException e) {
                 // Ignore the bucket if it's the wrong type.
@@ -19,17 +19,9 @@ package uk.ac.standrews.cs.neoStorr.impl;
 import org.json.JSONWriter;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.PersistentObjectException;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
-import uk.ac.standrews.cs.neoStorr.interfaces.IReferenceType;
-import uk.ac.standrews.cs.neoStorr.interfaces.IType;
-import uk.ac.standrews.cs.neoStorr.types.LXPReferenceType;
 
 import java.io.StringWriter;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Vector;
 
 /**
  * This is a Labelled Cross Product (a tuple).
@@ -43,6 +35,10 @@ public abstract class StaticLXP extends LXP {
         super();
     }
 
+    StaticLXP(final long persistent_object_id, final IBucket<?> bucket, final int storage_size) {
+        super(persistent_object_id, bucket, storage_size);
+    }
+
     public StaticLXP(final long persistent_object_id, final Map properties, final IBucket bucket) throws PersistentObjectException {
 
         super(persistent_object_id, bucket);
@@ -52,60 +48,7 @@ public abstract class StaticLXP extends LXP {
 
     protected void fixReferences() throws PersistentObjectException {
 
-        final IReferenceType type = getMetaData().getType();
-        final Collection<String> labels = type.getLabels();
-
-        for (final String label : labels) {
-
-            final IType t = type.getFieldType(label);
-            if (t instanceof LXPReferenceType) {
-
-                final String serialised = (String) get(label);
-                final String class_name = extractRefType((LXPReferenceType) type);
-
-                try {
-                    final Class c = getClass(class_name);
-
-                    final Method makeref = c.getDeclaredMethod("makeRef", String.class);
-                    final LXPReference newref = (LXPReference) makeref.invoke(null, serialised);
-                    put(label, newref);
-
-                } catch (final Exception e) {
-                    throw new PersistentObjectException("Error in reflective constructor call", e);
-                }
-            }
-        }
-    }
-
-    private Class getClass(final String name) throws ClassNotFoundException, NoSuchFieldException, IllegalAccessException {
-
-        final Iterator<Class> iterator = getLoadedClasses(Thread.currentThread().getContextClassLoader());
-
-        while (iterator.hasNext()) {
-
-            final Class c = iterator.next();
-            if (c.getSimpleName().equals(name)) return c;
-        }
-        throw new ClassNotFoundException("Could not find a loaded class with name <" + name + ">");
-    }
-
-    private static Iterator<Class> getLoadedClasses(final ClassLoader class_loader) throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException {
-
-        Class c = class_loader.getClass();
-        while (c != ClassLoader.class) c = c.getSuperclass();
-
-        final Field f = c.getDeclaredField("classes");
-        f.setAccessible(true);
-        return ((Vector<Class>) f.get(class_loader)).iterator();
-    }
-
-    /**
-     * @param t - should be a reference type containing a string of form STOREREF[Classname]
-     */
-    private String extractRefType(LXPReferenceType t) {
-
-        final String rep = t.getRep().getString(0); // slot zero contains "STOREREF[Classname]"
-        return rep.substring("STOREREF[".length(), rep.length() - 1);
+        getMetaData().getReferenceFixUp().apply(this);
     }
 
     @Override
@@ -18,19 +18,20 @@ package uk.ac.standrews.cs.neoStorr.impl;
 
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
-import org.neo4j.driver.Transaction;
 import org.neo4j.driver.types.Node;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.impl.TransactionManager;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransactionManager;
 import uk.ac.standrews.cs.neoStorr.interfaces.IRepository;
 import uk.ac.standrews.cs.neoStorr.interfaces.IStore;
+import uk.ac.standrews.cs.neoStorr.types.ReferenceCheck;
 import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongConsumer;
 
 import static org.neo4j.driver.Values.parameters;
 import static uk.ac.standrews.cs.neoStorr.impl.Repository.repositoryNameIsLegal;
@@ -40,13 +41,14 @@ import static uk.ac.standrews.cs.neoStorr.impl.Repository.repositoryNameIsLegal;
  */
 public class Store implements IStore {
 
-    private static Store instance = null;
+    private static volatile Store instance = null;
 
     private final ITransactionManager transaction_manager;
     private final TypeFactory type_factory;
-    private final Map<String, IRepository> repository_cache;
+    private final HandleCache<IRepository> repository_cache;
 
     private NeoDbCypherBridge bridge = null;
+    private volatile ReferenceCheck reference_check = ReferenceCheck.DEREFERENCE;
 
     private static final String CREATE_REPO_QUERY = "MERGE (a:STORR_REPOSITORY {name: $name})";
     private static final String REPO_EXISTS_QUERY = "MATCH (r:STORR_REPOSITORY {name: $name}) return r";
@@ -70,7 +72,7 @@ public class Store implements IStore {
 
         try {
             bridge = new NeoDbCypherBridge();
-            repository_cache = new HashMap<>();
+            repository_cache = new HandleCache<>();
 
             transaction_manager = new TransactionManager(this);
             type_factory = new TypeFactory(this);
@@ -82,10 +84,17 @@ public class Store implements IStore {
         }
     }
 
-    public synchronized static IStore getInstance() {
+    public static IStore getInstance() {
 
-        if (instance == null) instance = new Store();
-        return instance;
+        Store store = instance;
+
+        if (store == null) {
+            synchronized (Store.class) {
+                store = instance;
+                if (store == null) instance = store = new Store();
+            }
+        }
+        return store;
     }
 
     public NeoDbCypherBridge getBridge() {
@@ -130,6 +139,16 @@ public class Store implements IStore {
         return type_factory;
     }
 
+    @Override
+    public ReferenceCheck getReferenceCheck() {
+        return reference_check;
+    }
+
+    @Override
+    public void setReferenceCheck(final ReferenceCheck check) {
+        reference_check = check;
+    }
+
     @Override
     public IRepository makeRepository(final String name) throws RepositoryException {
 
@@ -142,10 +161,10 @@ public class Store implements IStore {
         }
 
         createRepositoryInNeo(name);
-        IRepository r = new Repository(this, name);
-        repository_cache.put(name, r);
+        final IRepository repository = new Repository(this, name);
+        final IRepository cached = repository_cache.putIfAbsent(name, repository);
 
-        return r;
+        return cached != null ? cached : repository;
     }
 
     @Override
@@ -166,41 +185,59 @@ public class Store implements IStore {
     @Override
     public IRepository getRepository(final String name) throws RepositoryException {
 
-        if (repository_cache.containsKey(name)) {
-            return repository_cache.get(name);
-        }
+        // Only one thread creates the handle for a repository; the others wait for it.
+        final IRepository repository = repository_cache.getOrLoad(name, this::loadRepository);
+        if (repository == null) throw new RepositoryException("repository does not exist: " + name);
 
-        if (repositoryExistsInDB(name)) {
-            final IRepository r = new Repository(this, name);
-            repository_cache.put(name, r);
-            return r;
-        }
+        return repository;
+    }
 
-        throw new RepositoryException("repository does not exist: " + name);
+    /**
+     * @return a handle for the named repository, or null if there is no legal repository with that name in the database
+     */
+    private IRepository loadRepository(final String name) throws RepositoryException {
+
+        if (!repositoryNameIsLegal(name) || !repositoryExistsInDB(name)) return null;
+
+        return new Repository(this, name);
     }
 
     @Override
     public void deleteRepository(final String repository_name) throws RepositoryException {
 
+        deleteRepository(repository_name, deleted -> {});
+    }
+
+    @Override
+    public void deleteRepository(final String repository_name, final LongConsumer progress_listener) throws RepositoryException {
+
         if (!repositoryExists(repository_name))
             throw new RepositoryException("Bucket " + repository_name + " does not exist");
 
+        final Repository repository = (Repository) getRepository(repository_name);
         repository_cache.remove(repository_name);
 
-        try (final Session session = bridge.getNewSession(); final Transaction tx = session.beginTransaction()) {
+        final List<String> bucket_names = new ArrayList<>();
+        repository.getBucketNameIterator().forEachRemaining(bucket_names::add);
+
+        long deleted_before = 0;
+        for (final String bucket_name : bucket_names) {
 
-            tx.run(DELETE_REPO_CONTENTS_QUERY, parameters("name", repository_name));
-            tx.run(DELETE_EMPTY_REPO_QUERY, parameters("name", repository_name));
-            tx.commit();
+            final long previously_deleted = deleted_before;
+            deleted_before += repository.deleteBucketInBatches(bucket_name, deleted -> progress_listener.accept(previously_deleted + deleted));
         }
+
+        bridge.executeWrite((tx, retry) -> {
+            tx.run(DELETE_REPO_CONTENTS_QUERY, parameters("name", repository_name)).consume();
+            return tx.run(DELETE_EMPTY_REPO_QUERY, parameters("name", repository_name)).consume();
+        });
     }
 
     private void createRepositoryInNeo(final String name) throws RepositoryException {
 
         if (repositoryExists(name)) throw new RepositoryException("Repo: " + name + " already exists");
 
-        try (final Session session = bridge.getNewSession()) {
-            session.run(CREATE_REPO_QUERY, parameters("name", name));
-        }
+        // The query merges, so repeating it is safe.
+        bridge.executeWrite((tx, retry) -> tx.run(CREATE_REPO_QUERY, parameters("name", name)).consume());
     }
 }
@@ -27,6 +27,7 @@ import uk.ac.standrews.cs.neoStorr.types.Types;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by al on 12/09/2014.
@@ -39,6 +40,9 @@ public class TypeFactory {
     static final String NAME_FIELD_NAME = "name";
     static final String KEY_FIELD_NAME = "key";
 
+    // Classes of persistent types, registered as each class's metadata is initialised.
+    private static final Map<String, Class<?>> registered_classes = new ConcurrentHashMap<>();
+
     private final IBucket type_reps_bucket;
     private final IBucket type_name_bucket;
     private final IStore store;
@@ -89,6 +93,26 @@ public class TypeFactory {
         return ids_to_type_cache.get(id);
     }
 
+    /**
+     * Records the class that implements the persistent type with the given name.
+     *
+     * @param type_name the name of the type
+     * @param c         the class implementing the type
+     */
+    public static void registerClass(final String type_name, final Class<?> c) {
+
+        registered_classes.put(type_name, c);
+    }
+
+    /**
+     * @param type_name the name of a type
+     * @return the class registered for the type, or null if no class has been registered with that name
+     */
+    public static Class<?> getRegisteredClass(final String type_name) {
+
+        return registered_classes.get(type_name);
+    }
+
     private void loadCaches() {
 
         try {
@@ -23,7 +23,9 @@ import uk.ac.standrews.cs.neoStorr.impl.NeoBackedBucket;
 import uk.ac.standrews.cs.neoStorr.impl.PersistentObject;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransaction;
+import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransactionScope;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,15 +36,18 @@ import java.util.Map;
  */
 public class Transaction implements ITransaction {
 
+    private final TransactionManager transaction_manager;
     private final String transaction_id;
     private final Session session;
     private final List<OverwriteRecord> undo_log = new ArrayList<>();
+    private final List<Runnable> completion_actions = new ArrayList<>();
 
-    private org.neo4j.driver.Transaction tx;
+    private volatile org.neo4j.driver.Transaction tx;
 
-    Transaction(final TransactionManager transaction_manager) {
+    Transaction(final TransactionManager transaction_manager, final String transaction_id) {
 
-        transaction_id = String.valueOf(Thread.currentThread().threadId()); // TODO this is good enough for a single machine - need to do more work for multiple node support
+        this.transaction_manager = transaction_manager;
+        this.transaction_id = transaction_id; // TODO this is good enough for a single machine - need to do more work for multiple node support
         session = transaction_manager.getBridge().getNewSession();
         tx = session.beginTransaction();
     }
@@ -50,8 +55,12 @@ public class Transaction implements ITransaction {
     @Override
     public synchronized void commit() {
 
-        tx.commit();
-        close();
+        try {
+            tx.commit();
+
+        } finally {
+            close();
+        }
     }
 
     @Override
@@ -59,7 +68,12 @@ public class Transaction implements ITransaction {
 
         // TODO does it really throw illegal state exception?
 
-        tx.rollback();
+        try {
+            tx.rollback();
+
+        } finally {
+            close();
+        }
 
         for (final OverwriteRecord undo_state : undo_log) {
 
@@ -80,19 +94,46 @@ public class Transaction implements ITransaction {
                         obj.put(meta_data.getSlot(field_name), undo_map.get(field_name));
                     }
                 }
+                obj.markClean();
             } catch (BucketException ignore) {
                 // Persistent object couldn't be loaded if its creation was never committed.
             }
         }
-
-        close();
     }
 
     private void close() {
 
-        session.close();
-        tx.close();
-        tx = null;
+        try {
+            try {
+                tx.close();
+
+            } finally {
+                session.close();
+            }
+
+        } finally {
+            tx = null;
+            transaction_manager.finished(this);
+
+            for (final Runnable action : completion_actions) {
+                action.run();
+            }
+            completion_actions.clear();
+        }
+    }
+
+    @Override
+    public synchronized void onCompletion(final Runnable action) {
+
+        if (isActive()) completion_actions.add(action);
+        else action.run();
+    }
+
+    @Override
+    public synchronized <T, E extends Exception> T execute(final NeoDbCypherBridge.WriteWork<T, E> work) throws E {
+
+        if (!isActive()) throw new IllegalStateException("Transaction " + transaction_id + " is no longer active");
+        return work.execute(tx, false);
     }
 
     @Override
@@ -107,6 +148,11 @@ public class Transaction implements ITransaction {
         }
     }
 
+    @Override
+    public ITransactionScope bind() {
+        return transaction_manager.bind(this);
+    }
+
     @Override
     public boolean isActive() {
         return tx != null;
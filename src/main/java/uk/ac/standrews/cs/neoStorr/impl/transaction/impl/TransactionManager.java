@@ -19,12 +19,13 @@ package uk.ac.standrews.cs.neoStorr.impl.transaction.impl;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransaction;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransactionManager;
+import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransactionScope;
 import uk.ac.standrews.cs.neoStorr.interfaces.IStore;
 import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by al on 05/01/15.
@@ -32,9 +33,17 @@ import java.util.Map;
 public class TransactionManager implements ITransactionManager {
 
     private final IStore store;
-    private final Map<String, ITransaction> map = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, ITransaction> map = new ConcurrentHashMap<>();
+    private final AtomicLong next_id = new AtomicLong();
 
-    private boolean auto_commit = true;
+    // Only set while a transaction begun on a thread is open, so nothing is left behind by finished threads.
+    private final ThreadLocal<ITransaction> begun_transaction = new ThreadLocal<>();
+
+    // Only set within the scope of ITransaction.bind().
+    private final ThreadLocal<ITransaction> bound_transaction = new ThreadLocal<>();
+
+    // Only set for threads that have disabled auto-commit, the default being enabled.
+    private final ThreadLocal<Boolean> auto_commit_disabled = new ThreadLocal<>();
 
     public TransactionManager(final IStore store) throws RepositoryException {
         this.store = store;
@@ -43,8 +52,9 @@ public class TransactionManager implements ITransactionManager {
     @Override
     public ITransaction beginTransaction() {
 
-        final Transaction t = new Transaction(this);
+        final Transaction t = new Transaction(this, Long.toString(next_id.incrementAndGet()));
         map.put(t.getId(), t);
+        begun_transaction.set(t);
         return t;
     }
 
@@ -53,12 +63,55 @@ public class TransactionManager implements ITransactionManager {
         return map.get(id);
     }
 
+    @Override
+    public ITransaction getCurrentTransaction() {
+
+        final ITransaction bound = getBoundTransaction();
+        if (bound != null) return bound;
+
+        final ITransaction begun = begun_transaction.get();
+
+        if (begun != null && !begun.isActive()) {
+            // Finished on another thread.
+            begun_transaction.remove();
+            return null;
+        }
+        return begun;
+    }
+
+    private ITransaction getBoundTransaction() {
+
+        final ITransaction bound = bound_transaction.get();
+        return bound != null && bound.isActive() ? bound : null;
+    }
+
+    ITransactionScope bind(final ITransaction transaction) {
+
+        final ITransaction previous = bound_transaction.get();
+        bound_transaction.set(transaction);
+
+        return () -> {
+            if (previous != null) bound_transaction.set(previous);
+            else bound_transaction.remove();
+        };
+    }
+
+    void finished(final ITransaction transaction) {
+
+        map.remove(transaction.getId());
+        if (begun_transaction.get() == transaction) begun_transaction.remove();
+    }
+
+    @Override
     public void setAutoCommit(final boolean auto_commit) {
-        this.auto_commit = auto_commit;
+
+        if (auto_commit) auto_commit_disabled.remove();
+        else auto_commit_disabled.set(Boolean.TRUE);
     }
 
+    @Override
     public boolean isAutoCommitEnabled() {
-        return auto_commit;
+        return auto_commit_disabled.get() == null && getBoundTransaction() == null;
     }
 
     public NeoDbCypherBridge getBridge() { return store.getBridge(); }
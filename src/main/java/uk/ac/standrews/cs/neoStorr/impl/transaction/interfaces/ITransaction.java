@@ -18,6 +18,7 @@ package uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces;
 
 import uk.ac.standrews.cs.neoStorr.impl.LXP;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
 /**
  * Modelled on com.google.appengine.api.datastore API
@@ -34,7 +35,30 @@ public interface ITransaction {
 
     String getId();
 
+    /**
+     * The driver transaction is not thread-safe: if this transaction is bound to more than one thread, it should
+     * only be used through {@link #execute(NeoDbCypherBridge.WriteWork)}.
+     */
     org.neo4j.driver.Transaction getNeoTransaction();
 
+    /**
+     * Runs the given work in this transaction, excluding other threads' work, commit and rollback while it runs.
+     *
+     * @throws IllegalStateException if the transaction is no longer active
+     */
+    <T, E extends Exception> T execute(NeoDbCypherBridge.WriteWork<T, E> work) throws E;
+
     void add(IBucket bucket, LXP lxp);
+
+    /**
+     * Registers an action to be run once this transaction has committed or rolled back, or straight away if it already has.
+     */
+    void onCompletion(Runnable action);
+
+    /**
+     * Makes this the current transaction of the calling thread until the returned scope is closed,
+     * so that it can be used from a task running on another thread, such as an executor worker.
+     * Bucket operations from the threads it is bound to are serialised through {@link #execute(NeoDbCypherBridge.WriteWork)}.
+     */
+    ITransactionScope bind();
 }
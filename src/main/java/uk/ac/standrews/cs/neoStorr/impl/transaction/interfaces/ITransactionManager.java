@@ -25,7 +25,21 @@ public interface ITransactionManager {
 
     ITransaction getTransaction(String id);
 
+    /**
+     * Returns the active transaction bound to the calling thread or, failing that, the one begun on it, or null if
+     * there is neither.
+     */
+    ITransaction getCurrentTransaction();
+
+    /**
+     * Sets whether operations on the calling thread that are outside a transaction commit individually.
+     * Other threads are unaffected; auto-commit is enabled by default.
+     */
     void setAutoCommit(boolean auto_commit);
 
+    /**
+     * Returns true if an operation on the calling thread would commit individually, that is, if auto-commit is
+     * enabled for the thread and no transaction is bound to it by {@link ITransaction#bind()}.
+     */
     boolean isAutoCommitEnabled();
 }
@@ -19,7 +19,9 @@ package uk.ac.standrews.cs.neoStorr.interfaces;
 import uk.ac.standrews.cs.neoStorr.impl.PersistentObject;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 /**
  * The interface for a Bucket (a repository of OID records).
@@ -40,6 +42,17 @@ public interface IBucket<T extends PersistentObject> {
      */
     T getObjectById(long id) throws BucketException;
 
+    /**
+     * Gets the OID records with the specified ids.
+     * Records in the object cache are returned directly; the remainder are fetched from the store with one query
+     * per batch of {@link #getBatchSize()} ids.
+     *
+     * @param ids - the identifiers of the OID records required.
+     * @return the records with the specified ids, in the order requested, with null in place of any id not found in the bucket
+     * @throws BucketException if any id is null, if a record that was found cannot be created or if something goes wrong.
+     */
+    List<T> getObjectsByIds(Collection<Long> ids) throws BucketException;
+
     /**
      * Synchronously writes the state of a record to a bucket.
      * The id of the record is used to determine its name in the bucket.
@@ -50,6 +63,17 @@ public interface IBucket<T extends PersistentObject> {
      */
     void makePersistent(T record) throws BucketException;
 
+    /**
+     * Synchronously writes the state of a collection of records to a bucket.
+     * The records are written in batches of at most {@link #getBatchSize()} records; each batch is checked, created
+     * and added to the bucket in a single statement, and is written either in its entirety or not at all. The records
+     * of a batch that is not written are not assigned to the bucket.
+     *
+     * @param records whose state is to be written.
+     * @throws BucketException if any record in a batch already exists or fails the bucket's type checks, or if an error occurs during the operation.
+     */
+    void makePersistent(Collection<T> records) throws BucketException;
+
     /**
      * Updates the state of the specified record in the store.
      * Must be performed in the context of a transaction
@@ -59,6 +83,16 @@ public interface IBucket<T extends PersistentObject> {
      */
     void update(T record) throws BucketException;
 
+    /**
+     * Updates the state of the specified records in the store.
+     * The records are written in batches of at most {@link #getBatchSize()} records, sending only their changed fields;
+     * each batch is written in a single round trip, either in its entirety or not at all.
+     *
+     * @param records the records to be updated
+     * @throws BucketException if any record in a batch is not in the bucket, or if an error occurs during the operation.
+     */
+    void update(Collection<T> records) throws BucketException;
+
     /**
      * Delete the record with the specified oid
      *
@@ -67,6 +101,31 @@ public interface IBucket<T extends PersistentObject> {
      */
     void delete(long oid) throws BucketException;
 
+    /**
+     * Deletes the records with the specified oids, in batches of at most {@link #getBatchSize()} records.
+     * Oids of records not in the bucket are ignored.
+     *
+     * @param oids denoting the records to be deleted
+     * @throws BucketException if an error occurs during the operation.
+     */
+    void delete(Collection<Long> oids) throws BucketException;
+
+    /**
+     * Deletes all the records in the bucket, in batches of at most {@link #getBatchSize()} records,
+     * each committed in its own transaction. The bucket itself remains.
+     *
+     * @throws BucketException if an error occurs during the operation.
+     */
+    void truncate() throws BucketException;
+
+    /**
+     * Deletes all the records in the bucket as {@link #truncate()}, reporting progress after each batch.
+     *
+     * @param progress_listener called with the number of records deleted so far
+     * @throws BucketException if an error occurs during the operation.
+     */
+    void truncate(LongConsumer progress_listener) throws BucketException;
+
     /**
      * @param cache_size - set the size of the object cache being implemented by the bucket
      * @throws BucketException if the cache size if smaller than the currently set cache size (i.e. cannot lose cached information
@@ -78,17 +137,62 @@ public interface IBucket<T extends PersistentObject> {
      */
     int getCacheSize();
 
+    /**
+     * @param batch_size - set the maximum number of records written to the store in a single round trip by bulk operations
+     * @throws BucketException if the batch size is not positive
+     */
+    void setBatchSize(int batch_size) throws BucketException;
+
+    /**
+     * @return the maximum number of records written to the store in a single round trip by bulk operations
+     */
+    int getBatchSize();
+
+    /**
+     * @param fetch_size - set the number of records fetched from the store at a time by input streams
+     * @throws BucketException if the fetch size is not positive
+     */
+    void setFetchSize(int fetch_size) throws BucketException;
+
+    /**
+     * @return the number of records fetched from the store at a time by input streams
+     */
+    int getFetchSize();
+
     /**
      * @return an input Stream containing all the OID records in this Bucket
      * @throws BucketException if an error occurs during the operation.
      */
     IInputStream<T> getInputStream() throws BucketException;
 
+    /**
+     * Returns an input stream that reads the records in this Bucket through a single cursor per iterator, fetching them
+     * from the store in chunks of {@link #getFetchSize()} records so that memory use is bounded. The cursor holds a
+     * connection to the store until the iterator is exhausted or the stream is closed, so a stream whose iterators
+     * may be abandoned before the end should be closed.
+     * Cached instances are returned in preference to newly created ones.
+     *
+     * @param cache_records whether records created by the stream should be added to the object cache
+     * @return an input Stream containing all the OID records in this Bucket
+     * @throws BucketException if an error occurs during the operation.
+     */
+    IInputStream<T> getInputStream(boolean cache_records) throws BucketException;
+
     /**
      * @return an output Stream which supports the writing of records to this Bucket
      */
     IOutputStream<T> getOutputStream();
 
+    /**
+     * Returns an output stream that buffers records and writes them to this Bucket in batches on a background thread.
+     * Records are committed by the background thread in transactions of its own, so the stream cannot be used
+     * while auto-commit is disabled for the calling thread. Failures are reported by the next call to add, flush or close.
+     *
+     * @param queue_capacity the maximum number of records buffered before calls to add block
+     * @return a buffered output Stream which supports the writing of records to this Bucket
+     */
+    IOutputStream<T> getBufferedOutputStream(int queue_capacity);
+
     /**
      * @return the oids of the records that are in this bucket
      */
@@ -105,10 +209,25 @@ public interface IBucket<T extends PersistentObject> {
     IRepository getRepository();
 
     /**
-     * Returns the number of records stored in the bucket
+     * Returns the number of records stored in the bucket.
+     * The count is computed by the store without transferring any records, or taken from the size cache if enabled.
      */
     int size() throws BucketException;
 
+    /**
+     * Enables or disables caching of the bucket size.
+     * When enabled, the size is counted once and then kept up to date by writes and deletions made through this bucket,
+     * so it does not reflect changes made by other processes; writes made within explicit transactions cause it to be counted again.
+     *
+     * @param enabled whether the size should be cached
+     */
+    void setSizeCacheEnabled(boolean enabled);
+
+    /**
+     * @return true if the bucket size is cached
+     */
+    boolean isSizeCacheEnabled();
+
     /**
      * A predicate to determine if a OID with the given id is located in the bucket.
      *
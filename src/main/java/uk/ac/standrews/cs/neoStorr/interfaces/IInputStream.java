@@ -21,11 +21,19 @@ import uk.ac.standrews.cs.neoStorr.impl.PersistentObject;
 
 /**
  * Provides an input stream of labelled cross product records.
- * Does not implement any functionality other than that provided by Iterable.
+ * Does not implement any functionality other than that provided by Iterable and AutoCloseable.
  * Provided for completeness to match @class IOutputStream
  *
  * @author al
  */
-public interface IInputStream<T extends PersistentObject> extends Iterable<T> {
+public interface IInputStream<T extends PersistentObject> extends Iterable<T>, AutoCloseable {
 
+    /**
+     * Releases the resources held by iterators over the stream that have not been exhausted.
+     * Iterators that are exhausted release their resources themselves; a stream whose iterators may be abandoned
+     * should be closed. Does nothing for streams that hold no resources.
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -19,11 +19,13 @@ package uk.ac.standrews.cs.neoStorr.interfaces;
 import uk.ac.standrews.cs.neoStorr.impl.PersistentObject;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 
+import java.util.Collection;
+
 /**
  * Provides the interface to an output stream of labelled cross product records.
  * Created by al on 28/04/2014.
  */
-public interface IOutputStream<T extends PersistentObject> {
+public interface IOutputStream<T extends PersistentObject> extends AutoCloseable {
 
     /**
      * Add a record to the stream
@@ -32,4 +34,36 @@ public interface IOutputStream<T extends PersistentObject> {
      * @throws BucketException if one is thrown during the underlying bucket operations
      */
     void add(T record) throws BucketException;
+
+    /**
+     * Add a collection of records to the stream
+     *
+     * @param records - the records to be added to a stream
+     * @throws BucketException if one is thrown during the underlying bucket operations
+     */
+    default void addAll(final Collection<T> records) throws BucketException {
+
+        for (final T record : records) {
+            add(record);
+        }
+    }
+
+    /**
+     * Blocks until all records previously added to the stream have been written to the underlying bucket.
+     * Does nothing for streams that write records as they are added.
+     *
+     * @throws BucketException if writing any of the records failed
+     */
+    default void flush() throws BucketException {
+    }
+
+    /**
+     * Flushes the stream and releases any resources associated with it.
+     *
+     * @throws BucketException if writing any of the records failed
+     */
+    @Override
+    default void close() throws BucketException {
+        flush();
+    }
 }
@@ -21,6 +21,7 @@ import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
 
 import java.util.Iterator;
+import java.util.function.LongConsumer;
 
 /**
  * Classes implementing this interface is used to represent repositories.
@@ -63,6 +64,15 @@ public interface IRepository {
      */
     void deleteBucket(String name) throws RepositoryException;
 
+    /**
+     * This method deletes the specified bucket, removing its records in batches, and reports progress after each batch.
+     *
+     * @param name - the name of the bucket to be deleted.
+     * @param progress_listener - called with the number of records deleted so far.
+     * @throws RepositoryException - if the bucket does not exist or something goes wrong
+     */
+    void deleteBucket(String name, LongConsumer progress_listener) throws RepositoryException;
+
     /**
      * @param name - the name of the bucket being looked up
      * @return the bucket with the given name, if it exists.
@@ -79,6 +89,14 @@ public interface IRepository {
      */
     <T extends LXP> IBucket<T> getBucket(final String name, Class<T> bucketType) throws RepositoryException;
 
+    /**
+     * @param name - the name of the bucket being looked up
+     * @return the id of the type with which the bucket was created, or -1 if the bucket is untyped.
+     * The id is cached after the first lookup.
+     * @throws RepositoryException if the bucket does not exist or if something goes wrong.
+     */
+    long getBucketTypeLabelId(final String name) throws RepositoryException;
+
     /**
      * @return the names of all the buckets in the repo
      * Note this returns strings and not buckets since they may be of different types
@@ -19,8 +19,11 @@ package uk.ac.standrews.cs.neoStorr.interfaces;
 import uk.ac.standrews.cs.neoStorr.impl.TypeFactory;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransactionManager;
+import uk.ac.standrews.cs.neoStorr.types.ReferenceCheck;
 import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
 
+import java.util.function.LongConsumer;
+
 /**
  * This interface is used to encode the type of a Store within the system.
  * The Stores are implemented as a Hierarchy in which there is one instance of the Store (per node).
@@ -42,6 +45,18 @@ public interface IStore {
 
     TypeFactory getTypeFactory();
 
+    /**
+     * @return how reference fields are checked against their declared types when records are written
+     */
+    ReferenceCheck getReferenceCheck();
+
+    /**
+     * Sets how reference fields are checked against their declared types when records are written.
+     *
+     * @param check the kind of check to be performed, {@link ReferenceCheck#DEREFERENCE} by default
+     */
+    void setReferenceCheck(ReferenceCheck check);
+
     /**
      * @param name - the name of the repository to be created
      * @return a new repository with the given name
@@ -63,6 +78,16 @@ public interface IStore {
      */
     void deleteRepository(String name) throws RepositoryException;
 
+    /**
+     * This method deletes the specified repository, removing the records in each of its buckets in batches,
+     * and reports progress after each batch.
+     *
+     * @param name - the name of the repo to be deleted.
+     * @param progress_listener - called with the number of records deleted so far.
+     * @throws RepositoryException - if the repo does not exist or something goes wrong
+     */
+    void deleteRepository(String name, LongConsumer progress_listener) throws RepositoryException;
+
     /**
      * @param name - the name of the repo being looked up
      * @return the repo with the given name, if it exists.
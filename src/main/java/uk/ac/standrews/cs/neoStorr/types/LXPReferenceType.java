@@ -22,6 +22,7 @@ import uk.ac.standrews.cs.neoStorr.impl.LXPReference;
 import uk.ac.standrews.cs.neoStorr.impl.Store;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.*;
 import uk.ac.standrews.cs.neoStorr.interfaces.IReferenceType;
+import uk.ac.standrews.cs.neoStorr.interfaces.IRepository;
 import uk.ac.standrews.cs.neoStorr.interfaces.IStoreReference;
 import uk.ac.standrews.cs.neoStorr.interfaces.IType;
 
@@ -51,15 +52,25 @@ public class LXPReferenceType implements IReferenceType {
 
         try {
             // If we just require an lxp don't do more structural checking.
+            if (equals(Store.getInstance().getTypeFactory().getTypeWithName("lxp"))) return true;
 
-            return equals(Store.getInstance().getTypeFactory().getTypeWithName("lxp")) ||
-                    Types.checkStructuralConsistency(((LXPReference) value).getReferend(), this);
+            final LXPReference<?> reference = (LXPReference<?>) value;
+
+            // Checking the type label avoids loading the referend, but is only done if the store opts in to it.
+            return (Store.getInstance().getReferenceCheck() == ReferenceCheck.TYPE_LABEL && referencedBucketHasThisType(reference)) ||
+                    Types.checkStructuralConsistency(reference.getReferend(), this);
 
         } catch (RuntimeException | BucketException | RepositoryException e) {
             return false;
         }
     }
 
+    private boolean referencedBucketHasThisType(final LXPReference<?> reference) throws RepositoryException {
+
+        final IRepository repository = Store.getInstance().getRepository(reference.getRepositoryName());
+        return repository.getBucketTypeLabelId(reference.getBucketName()) == getId();
+    }
+
     @Override
     public Set<String> getLabels() {
         return typerep.getMetaData().getFieldNamesToSlotNumbers().keySet();
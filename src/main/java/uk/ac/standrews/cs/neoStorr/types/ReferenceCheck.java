@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.types;
+
+/**
+ * The ways in which a reference field may be checked against its declared reference type.
+ */
+public enum ReferenceCheck {
+
+    /**
+     * A reference is consistent if the bucket it refers to was created with the declared type.
+     * Otherwise the referend is loaded and checked structurally.
+     * The referend itself is not loaded when the type labels match.
+     */
+    TYPE_LABEL,
+
+    /**
+     * The referend is always loaded and checked structurally against the declared type.
+     */
+    DEREFERENCE
+}
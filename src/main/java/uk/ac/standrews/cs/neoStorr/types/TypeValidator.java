@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.types;
+
+import uk.ac.standrews.cs.neoStorr.impl.LXP;
+import uk.ac.standrews.cs.neoStorr.impl.LXPMetaData;
+import uk.ac.standrews.cs.neoStorr.interfaces.IReferenceType;
+import uk.ac.standrews.cs.neoStorr.interfaces.IType;
+
+import java.util.Set;
+
+/**
+ * A reference type compiled for checking the structure of records.
+ * The labels of the type and their field types are parsed once, and the slots of the labels in the most recently
+ * checked record metadata are remembered, so checking a record is a loop over its slots.
+ */
+final class TypeValidator {
+
+    private final String[] labels;
+    private final IType[] field_types;
+
+    private volatile SlotMap slot_map = null;
+
+    private TypeValidator(final String[] labels, final IType[] field_types) {
+
+        this.labels = labels;
+        this.field_types = field_types;
+    }
+
+    /**
+     * @param ref_type the type to be compiled
+     * @return the compiled type, or null if the type refers to a type that is not yet known
+     */
+    static TypeValidator compile(final IReferenceType ref_type) {
+
+        final Set<String> required_labels = ref_type.getLabels();
+
+        final String[] labels = required_labels.toArray(new String[0]);
+        final IType[] field_types = new IType[labels.length];
+
+        try {
+            for (int i = 0; i < labels.length; i++) {
+                field_types[i] = ref_type.getFieldType(labels[i]);
+            }
+
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        return new TypeValidator(labels, field_types);
+    }
+
+    boolean isConsistent(final LXP record) {
+
+        final int[] slots = getSlots(record.getMetaData());
+
+        for (int i = 0; i < slots.length; i++) {
+
+            if (slots[i] < 0) return false; // required label not present
+
+            try {
+                if (!field_types[i].valueConsistentWithType(record.get(slots[i])))
+                    return false; // label does not match expected type
+
+            } catch (RuntimeException e) {
+                return false; // type mismatch
+            }
+        }
+        return true;
+    }
+
+    private int[] getSlots(final LXPMetaData metadata) {
+
+        // Metadata is immutable once initialised, so its identity determines the slots.
+        final SlotMap map = slot_map;
+        if (map != null && map.metadata == metadata) return map.slots;
+
+        final int[] slots = new int[labels.length];
+
+        for (int i = 0; i < labels.length; i++) {
+
+            final Integer slot = metadata.getSlot(labels[i]);
+            slots[i] = slot == null ? -1 : slot;
+        }
+
+        slot_map = new SlotMap(metadata, slots);
+        return slots;
+    }
+
+    private static final class SlotMap {
+
+        private final LXPMetaData metadata;
+        private final int[] slots;
+
+        private SlotMap(final LXPMetaData metadata, final int[] slots) {
+
+            this.metadata = metadata;
+            this.slots = slots;
+        }
+    }
+}
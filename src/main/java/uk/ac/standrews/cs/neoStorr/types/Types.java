@@ -23,7 +23,8 @@ import uk.ac.standrews.cs.neoStorr.interfaces.IType;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by al on 30/10/14.
@@ -32,6 +33,9 @@ public class Types {
 
     public static final String LABEL = "$LABEL$";
 
+    // Compiled types, keyed by type id.
+    private static final Map<Long, TypeValidator> validators = new ConcurrentHashMap<>();
+
     /**
      * Checks the type of a record (if there is one) is consistent with a supplied label (generally from a bucket)
      *
@@ -77,21 +81,23 @@ public class Types {
      */
     static <T extends LXP> boolean checkStructuralConsistency(final T record, final IReferenceType ref_type) {
 
-        final Set<String> record_keys = record.getMetaData().getFields();
-        final Set<String> required_labels = ref_type.getLabels();
+        final TypeValidator validator = getValidator(ref_type);
+        return validator != null && validator.isConsistent(record);
+    }
 
-        for (final String label : required_labels) {
-            if (!record_keys.contains(label)) return false; // required label not present
+    private static TypeValidator getValidator(final IReferenceType ref_type) {
 
-            try {
-                if (!ref_type.getFieldType(label).valueConsistentWithType(record.get(label)))
-                    return false; // label does not match expected type
+        final long type_id = ref_type.getId();
 
-            } catch (RuntimeException e) {
-                return false; // type mismatch
-            }
+        TypeValidator validator = validators.get(type_id);
+
+        if (validator == null) {
+            validator = TypeValidator.compile(ref_type);
+
+            // Types referring to types not yet known are not cached, so they can be compiled again later.
+            if (validator != null) validators.put(type_id, validator);
         }
-        return true; // all matched to here we are finished!
+        return validator;
     }
 
     /**
@@ -17,13 +17,23 @@
 package uk.ac.standrews.cs.neoStorr.util;
 
 import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Config;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.SimpleQueryRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 public class NeoDbCypherBridge extends NeoDbBridge implements AutoCloseable {
 
     private final Driver driver;
+    private volatile RetryPolicy retry_policy = RetryPolicy.DEFAULT;
 
     public NeoDbCypherBridge() {
         // Note: NeoDBTestURL can be set for unit-testing with Neo4j-harness
@@ -32,7 +42,8 @@ public class NeoDbCypherBridge extends NeoDbBridge implements AutoCloseable {
 
     public NeoDbCypherBridge(String url, String user, String password) {
         super(url, user, password);
-        driver = GraphDatabase.driver(url, AuthTokens.basic(user, password));
+        // Retries are made by executeWrite according to the retry policy, rather than by the driver.
+        driver = GraphDatabase.driver(url, AuthTokens.basic(user, password), Config.builder().withMaxTransactionRetryTime(0, TimeUnit.MILLISECONDS).build());
     }
 
     @Override
@@ -43,4 +54,118 @@ public class NeoDbCypherBridge extends NeoDbBridge implements AutoCloseable {
     public Session getNewSession() {
         return driver.session();
     }
+
+    /**
+     * @param fetch_size the number of records pulled from the server at a time when consuming query results
+     * @return a new session whose results are streamed in chunks of the given size
+     */
+    public Session getNewSession(final int fetch_size) {
+        return driver.session(SessionConfig.builder().withFetchSize(fetch_size).build());
+    }
+
+    public void setRetryPolicy(final RetryPolicy retry_policy) {
+        this.retry_policy = retry_policy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retry_policy;
+    }
+
+    /**
+     * Runs the given work in a write transaction of its own, which is committed if the work completes and rolled back
+     * if it throws an exception. If the transaction fails transiently, for example through a deadlock, it is attempted
+     * again after a delay, as determined by the retry policy.
+     *
+     * @param work the work, which must be safe to repeat
+     * @return the result of the work
+     * @throws E if thrown by the work
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T executeWrite(final WriteWork<T, E> work) throws E {
+
+        final RetryPolicy policy = retry_policy;
+
+        for (int attempt = 1; ; attempt++) {
+
+            final boolean retry = attempt > 1;
+
+            try (final Session session = getNewSession()) {
+
+                return session.executeWrite(tx -> {
+                    try {
+                        return work.execute(tx, retry);
+
+                    } catch (final RuntimeException e) {
+                        throw e;
+
+                    } catch (final Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+
+            } catch (final CompletionException e) {
+                throw (E) e.getCause();
+
+            } catch (final RuntimeException e) {
+                if (!policy.shouldRetry(e, attempt)) throw e;
+                backOff(policy.getDelayMillis(attempt), e);
+            }
+        }
+    }
+
+    private static void backOff(final long delay_millis, final RuntimeException cause) {
+
+        try {
+            Thread.sleep(delay_millis);
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Repeatedly runs a delete query, each run in its own transaction, until it deletes fewer nodes than the batch size.
+     * The query must use the parameter $batch_size to limit the nodes it deletes, and return their number as 'deleted'.
+     *
+     * @param query the delete query
+     * @param parameters the parameters of the query, other than the batch size
+     * @param batch_size the maximum number of nodes deleted in each transaction
+     * @param progress_listener called with the total number of nodes deleted so far after each transaction
+     * @return the total number of nodes deleted
+     */
+    public long deleteInBatches(final String query, final Map<String, Object> parameters, final int batch_size, final LongConsumer progress_listener) {
+
+        final Map<String, Object> batch_parameters = new HashMap<>(parameters);
+        batch_parameters.put("batch_size", batch_size);
+
+        long total_deleted = 0;
+        long deleted;
+
+        do {
+            // Repeating a batch is safe, as it deletes whichever nodes remain.
+            deleted = executeWrite((tx, retry) -> tx.run(query, batch_parameters).single().get("deleted").asLong());
+            total_deleted += deleted;
+            progress_listener.accept(total_deleted);
+
+        } while (deleted == batch_size);
+
+        return total_deleted;
+    }
+
+    /**
+     * Work run by {@link #executeWrite(WriteWork)}, possibly more than once.
+     */
+    @FunctionalInterface
+    public interface WriteWork<T, E extends Exception> {
+
+        /**
+         * @param tx the transaction in which to run queries
+         * @param retry true if an earlier attempt failed, in which case its changes may have been committed without
+         *              this being acknowledged, so the work should not assume that they were not
+         * @return the result of the work
+         * @throws E if the work fails
+         */
+        T execute(SimpleQueryRunner tx, boolean retry) throws E;
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module neo-storr.
+ *
+ * neo-storr is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * neo-storr is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with neo-storr. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.neoStorr.util;
+
+import org.neo4j.driver.exceptions.RetryableException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Determines how often, and after what delay, a write transaction that failed transiently is attempted again.
+ * The delay grows exponentially with each attempt, up to a maximum, and is randomised so that writers that
+ * failed together, such as both parties to a deadlock, do not retry together.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, 50, 2.0, 2000);
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 1.0, 0);
+
+    private final int max_attempts;
+    private final long initial_delay_millis;
+    private final double multiplier;
+    private final long max_delay_millis;
+
+    /**
+     * @param max_attempts the maximum number of times a transaction is attempted, including the first
+     * @param initial_delay_millis the delay before the first retry
+     * @param multiplier the factor by which the delay grows with each further retry
+     * @param max_delay_millis the limit on the delay before any retry
+     */
+    public RetryPolicy(final int max_attempts, final long initial_delay_millis, final double multiplier, final long max_delay_millis) {
+
+        if (max_attempts < 1) throw new IllegalArgumentException("At least one attempt must be made");
+        if (initial_delay_millis < 0 || max_delay_millis < 0 || multiplier < 1.0) throw new IllegalArgumentException("Retry delays must be non-negative and not decrease");
+
+        this.max_attempts = max_attempts;
+        this.initial_delay_millis = initial_delay_millis;
+        this.multiplier = multiplier;
+        this.max_delay_millis = max_delay_millis;
+    }
+
+    public int getMaxAttempts() {
+        return max_attempts;
+    }
+
+    /**
+     * @param e the exception thrown by the given attempt
+     * @param attempt the number of the failed attempt, starting from 1
+     * @return true if the transaction should be attempted again
+     */
+    public boolean shouldRetry(final RuntimeException e, final int attempt) {
+
+        return attempt < max_attempts && e instanceof RetryableException;
+    }
+
+    /**
+     * @param attempt the number of the failed attempt, starting from 1
+     * @return the delay before the next attempt, chosen at random between half and all of the exponential delay
+     */
+    public long getDelayMillis(final int attempt) {
+
+        final long delay = (long) Math.min(max_delay_millis, initial_delay_millis * Math.pow(multiplier, attempt - 1));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay - delay / 2 + 1);
+    }
+}
@@ -68,6 +68,7 @@ public abstract class CommonTest {
     public void setUp() throws Exception {
 
         store = Store.getInstance();
+        store.getTransactionManager().setAutoCommit(true);
 
         // Clean up in case of any previous incomplete cleaning.
         if (store.repositoryExists(REPOSITORY_NAME)) store.deleteRepository(REPOSITORY_NAME);
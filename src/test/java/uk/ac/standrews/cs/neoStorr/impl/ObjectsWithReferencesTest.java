@@ -26,6 +26,10 @@ import uk.ac.standrews.cs.neoStorr.impl.testData.Person;
 import uk.ac.standrews.cs.neoStorr.impl.testData.StaticPersonReference;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
 import uk.ac.standrews.cs.neoStorr.interfaces.IStoreReference;
+import uk.ac.standrews.cs.neoStorr.types.ReferenceCheck;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +38,7 @@ public class ObjectsWithReferencesTest extends CommonTest {
     static final String TYPED_BUCKET_NAME1 = "Typed Bucket 1";
     static final String TYPED_BUCKET_NAME2 = "Typed Bucket 2";
     static final String UNTYPED_BUCKET_NAME = "Untyped Bucket";
+    static final String OTHER_UNTYPED_BUCKET_NAME = "Other Untyped Bucket";
 
     private IBucket<Person> typed_bucket1;
     private IBucket<StaticPersonReference> typed_bucket2;
@@ -90,6 +95,140 @@ public class ObjectsWithReferencesTest extends CommonTest {
         assertEquals(al, reference.getReferend());
     }
 
+    @Test
+    public void dereferenceAReloadedStaticReference() throws Exception {
+
+        final Person al = new Person("Al", "Dearle");
+        persistRecord(al, typed_bucket1);
+
+        final StaticPersonReference referer = new StaticPersonReference(al);
+        persistRecord(referer, typed_bucket2);
+
+        typed_bucket2.invalidateCache();
+
+        final StaticPersonReference retrieved_referer = typed_bucket2.getObjectById(referer.getId());
+        final IStoreReference<Person> reference = retrieved_referer.getRef(StaticPersonReference.MY_FIELD);
+
+        assertNotSame(referer, retrieved_referer);
+        assertEquals(al, reference.getReferend());
+    }
+
+    @Test
+    public void referencedTypesAreRegistered() {
+
+        assertEquals(Person.class, TypeFactory.getRegisteredClass(Person.class.getSimpleName()));
+        assertEquals(StaticPersonReference.class, TypeFactory.getRegisteredClass(StaticPersonReference.class.getSimpleName()));
+        assertNull(TypeFactory.getRegisteredClass("NoSuchType"));
+    }
+
+    @Test
+    public void bucketTypeLabelsAreLookedUp() throws RepositoryException {
+
+        assertEquals(new Person().getMetaData().getType().getId(), repository.getBucketTypeLabelId(TYPED_BUCKET_NAME1));
+        assertEquals(-1, repository.getBucketTypeLabelId(UNTYPED_BUCKET_NAME));
+        assertThrows(RepositoryException.class, () -> repository.getBucketTypeLabelId("No such bucket"));
+    }
+
+    @Test
+    public void referenceCheckedByTypeLabelDoesNotLoadReferend() throws Exception {
+
+        final Person al = new Person("Al", "Dearle");
+        typed_bucket1.makePersistent(al);
+
+        // Not created from the record, so the reference does not hold the deleted record.
+        final StaticPersonReference referer = new StaticPersonReference();
+        referer.put(StaticPersonReference.MY_FIELD, new LXPReference<>(repository.getName(), TYPED_BUCKET_NAME1, al.getId()));
+
+        typed_bucket1.delete(al.getId());
+
+        // References are dereferenced unless the store opts in to checking type labels.
+        assertEquals(ReferenceCheck.DEREFERENCE, store.getReferenceCheck());
+        assertThrows(BucketException.class, () -> typed_bucket2.makePersistent(referer));
+
+        try {
+            store.setReferenceCheck(ReferenceCheck.TYPE_LABEL);
+            typed_bucket2.makePersistent(referer);
+            assertTrue(typed_bucket2.contains(referer.getId()));
+
+        } finally {
+            store.setReferenceCheck(ReferenceCheck.DEREFERENCE);
+        }
+    }
+
+    @Test
+    public void dereferenceUsesTheCachedBucket() throws Exception {
+
+        final Person al = new Person("Al", "Dearle");
+        typed_bucket1.makePersistent(al);
+
+        // Not created from the record, so the referend must be found through the bucket.
+        final LXPReference<Person> reference = new LXPReference<>(repository.getName(), TYPED_BUCKET_NAME1, al.getId());
+
+        assertSame(typed_bucket1, reference.getBucket());
+        assertSame(al, reference.getReferend(Person.class));
+    }
+
+    @Test
+    public void bucketHandlesAreCached() throws Exception {
+
+        final Repository reopened = new Repository(store, repository.getName());
+
+        final IBucket untyped = reopened.getBucket(TYPED_BUCKET_NAME1);
+        assertSame(untyped, reopened.getBucket(TYPED_BUCKET_NAME1));
+
+        final IBucket<Person> typed = reopened.getBucket(TYPED_BUCKET_NAME1, Person.class);
+        assertSame(untyped, typed);
+        assertEquals(Person.class, typed.getBucketType());
+        assertSame(typed, reopened.getBucket(TYPED_BUCKET_NAME1, Person.class));
+        assertSame(typed, reopened.getBucket(TYPED_BUCKET_NAME1));
+
+        assertThrows(RepositoryException.class, () -> reopened.getBucket(TYPED_BUCKET_NAME1, StaticPersonReference.class));
+    }
+
+    @Test
+    public void typedLookupOfABucketOfAnotherTypeFails() throws Exception {
+
+        final Repository reopened = new Repository(store, repository.getName());
+
+        assertThrows(RepositoryException.class, () -> reopened.getBucket(TYPED_BUCKET_NAME1, StaticPersonReference.class));
+        assertEquals(Person.class, reopened.getBucket(TYPED_BUCKET_NAME1, Person.class).getBucketType());
+    }
+
+    @Test
+    public void iteratingOverTypedBucketsLeavesOtherBucketsAlone() throws Exception {
+
+        final Repository reopened = new Repository(store, repository.getName());
+
+        final List<String> names = new ArrayList<>();
+        reopened.getIterator(Person.class).forEachRemaining(bucket -> names.add(bucket.getName()));
+
+        assertTrue(names.contains(TYPED_BUCKET_NAME1));
+        assertFalse(names.contains(TYPED_BUCKET_NAME2));
+        assertFalse(names.contains(UNTYPED_BUCKET_NAME));
+
+        assertEquals(StaticPersonReference.class, reopened.getBucket(TYPED_BUCKET_NAME2, StaticPersonReference.class).getBucketType());
+        assertNull(reopened.getBucket(UNTYPED_BUCKET_NAME).getBucketType());
+    }
+
+    @Test
+    public void dereferenceIntoAnUntypedBucket() throws Exception {
+
+        // Made through another handle on the repository, so the bucket's type is not known to the store's handle.
+        final IBucket other_bucket = new Repository(store, repository.getName()).makeBucket(OTHER_UNTYPED_BUCKET_NAME);
+
+        final Person al = new Person("Al", "Dearle");
+        other_bucket.makePersistent(al);
+
+        final LXPReference<Person> reference = new LXPReference<>(repository.getName(), OTHER_UNTYPED_BUCKET_NAME, al.getId());
+        final Person retrieved = reference.getReferend(Person.class);
+
+        assertEquals(al, retrieved);
+        assertEquals("Al", retrieved.get(Person.FORENAME));
+        assertSame(repository.getBucket(OTHER_UNTYPED_BUCKET_NAME), reference.getBucket());
+
+        assertThrows(RepositoryException.class, () -> repository.getBucket(UNTYPED_BUCKET_NAME, Person.class));
+    }
+
     @Test
     public void dereferenceAReference() throws BucketException, RepositoryException {
 
@@ -16,16 +16,31 @@
  */
 package uk.ac.standrews.cs.neoStorr.impl;
 
+import org.json.JSONObject;
+import org.json.JSONStringer;
 import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.TransientException;
+import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
 import uk.ac.standrews.cs.neoStorr.impl.testData.Car;
 import uk.ac.standrews.cs.neoStorr.impl.testData.JPOPerson;
 import uk.ac.standrews.cs.neoStorr.impl.testData.Person;
+import uk.ac.standrews.cs.neoStorr.impl.testData.Reading;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.interfaces.IInputStream;
 import uk.ac.standrews.cs.neoStorr.interfaces.IOutputStream;
 import uk.ac.standrews.cs.neoStorr.interfaces.IRepository;
+import uk.ac.standrews.cs.neoStorr.util.NeoDbCypherBridge;
+import uk.ac.standrews.cs.neoStorr.util.RetryPolicy;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -97,6 +112,74 @@ public class StoreTest extends CommonTest {
         assertFalse(bucket.contains(id));
     }
 
+    @Test
+    public void dynamicLXPWithManyFields() throws Exception {
+
+        final DynamicLXP lxp = new DynamicLXP();
+        for (int i = 0; i < 20; i++) {
+            lxp.put("field" + i, "value" + i);
+        }
+
+        final IBucket bucket = repository.getBucket(BUCKET_NAME);
+        bucket.makePersistent(lxp);
+        bucket.invalidateCache();
+
+        final LXP retrieved = (LXP) bucket.getObjectById(lxp.getId());
+        assertEquals("value19", retrieved.get("field19"));
+    }
+
+    @Test
+    public void loadedDynamicLXPsWithTheSameFieldsShareMetadata() throws Exception {
+
+        final Map<String, Object> fields1 = new LinkedHashMap<>();
+        fields1.put("age", "42");
+        fields1.put("address", "home");
+
+        final Map<String, Object> fields2 = new LinkedHashMap<>();
+        fields2.put("address", "away");
+        fields2.put("age", "43");
+
+        final DynamicLXP lxp1 = new DynamicLXP(1, fields1, null);
+        final DynamicLXP lxp2 = new DynamicLXP(2, fields2, null);
+
+        assertSame(lxp1.getMetaData(), lxp2.getMetaData());
+        assertEquals("43", lxp2.get("age"));
+        assertEquals("away", lxp2.get("address"));
+    }
+
+    @Test
+    public void dynamicLXPsWithTheSameFieldsShareMetadata() throws Exception {
+
+        final DynamicLXP lxp1 = new DynamicLXP();
+        lxp1.put("age", "42");
+        lxp1.put("address", "home");
+
+        final DynamicLXP lxp2 = new DynamicLXP();
+        lxp2.put("age", "43");
+        lxp2.put("address", "away");
+
+        final DynamicLXP lxp3 = new DynamicLXP();
+        lxp3.put("address", "home");
+        lxp3.put("age", "42");
+
+        assertSame(lxp1.getMetaData(), lxp2.getMetaData());
+        assertNotSame(lxp1.getMetaData(), lxp3.getMetaData());
+        assertEquals("address", lxp1.getMetaData().getFieldName(1));
+        assertEquals("age", lxp3.getMetaData().getFieldName(1));
+
+        lxp2.put("height", "1.8");
+        assertEquals(2, lxp1.getMetaData().getFieldCount());
+        assertEquals(3, lxp2.getMetaData().getFieldCount());
+
+        final IBucket bucket = repository.getBucket(BUCKET_NAME);
+        bucket.makePersistent(lxp1);
+        bucket.invalidateCache();
+
+        final LXP retrieved = (LXP) bucket.getObjectById(lxp1.getId());
+        assertEquals("42", retrieved.get("age"));
+        assertEquals("home", retrieved.get("address"));
+    }
+
     @Test
     public synchronized void createAndDeleteStaticLXP() throws Exception {
 
@@ -139,6 +222,31 @@ public class StoreTest extends CommonTest {
         repository.deleteBucket(NEW_BUCKET_NAME);
     }
 
+    @Test
+    public void concurrentLookupsShareOneHandle() throws Exception {
+
+        repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        final Repository reopened = new Repository(store, repository.getName());
+
+        final List<Callable<Object>> lookups = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            lookups.add(() -> reopened.getBucket(NEW_BUCKET_NAME, Person.class));
+            lookups.add(() -> Store.getInstance().getRepository(repository.getName()));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Set<Object> handles = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (final Future<Object> handle : executor.invokeAll(lookups)) {
+                handles.add(handle.get());
+            }
+            assertEquals(2, handles.size());
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void iterateOverUntypedBuckets() throws RepositoryException {
 
@@ -212,6 +320,413 @@ public class StoreTest extends CommonTest {
         repository.deleteBucket(NEW_BUCKET_NAME);
     }
 
+    @Test
+    public void truncateBucketInBatches() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setBatchSize(2);
+
+        final List<Person> people = Arrays.asList(new Person("a", "b"), new Person("c", "d"), new Person("e", "f"));
+        bucket.makePersistent(people);
+
+        final List<Long> progress = new ArrayList<>();
+        bucket.truncate(progress::add);
+
+        assertEquals(Arrays.asList(2L, 3L), progress);
+        assertEquals(0, bucket.size());
+        for (final Person person : people) {
+            assertFalse(bucket.contains(person.getId()));
+        }
+        assertTrue(repository.bucketExists(NEW_BUCKET_NAME));
+    }
+
+    @Test
+    public void deletingBucketsAndRepositoriesDeletesTheirRecords() throws Exception {
+
+        final IRepository new_repository = store.makeRepository(NEW_REPOSITORY_NAME);
+        final IBucket<Person> bucket1 = new_repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        final IBucket<Person> bucket2 = new_repository.makeBucket(BUCKET_NAME, Person.class);
+        final IBucket<Person> bucket3 = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person person1 = new Person("a", "b");
+        final Person person2 = new Person("c", "d");
+        final Person person3 = new Person("e", "f");
+        bucket1.makePersistent(person1);
+        bucket2.makePersistent(person2);
+        bucket3.makePersistent(person3);
+
+        final List<Long> progress = new ArrayList<>();
+        repository.deleteBucket(NEW_BUCKET_NAME, progress::add);
+        store.deleteRepository(NEW_REPOSITORY_NAME, progress::add);
+
+        assertEquals(Arrays.asList(1L, 1L, 2L), progress);
+        assertFalse(recordExists(person1.getId()));
+        assertFalse(recordExists(person2.getId()));
+        assertFalse(recordExists(person3.getId()));
+    }
+
+    @Test
+    public void getMultipleObjectsByIds() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setBatchSize(2);
+
+        final List<Person> people = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+
+            Person person = new Person("forename" + i, "surname" + i);
+            bucket.makePersistent(person);
+            people.add(person);
+        }
+
+        bucket.invalidateCache();
+        final Person cached = bucket.getObjectById(people.get(1).getId());
+
+        final long missing_id = new Person().getId();
+        final List<Person> retrieved = bucket.getObjectsByIds(Arrays.asList(people.get(4).getId(), missing_id, people.get(1).getId(), people.get(0).getId(), people.get(3).getId()));
+
+        assertEquals(Arrays.asList(people.get(4), null, people.get(1), people.get(0), people.get(3)), retrieved);
+        assertSame(cached, retrieved.get(2));
+
+        assertThrows(BucketException.class, () -> bucket.getObjectsByIds(Arrays.asList(people.get(0).getId(), null)));
+    }
+
+    @Test
+    public void cachedBucketSizeIsConsistent() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.makePersistent(new Person("forename", "surname"));
+
+        bucket.setSizeCacheEnabled(true);
+        assertEquals(1, bucket.size());
+
+        final Person person = new Person("another forename", "another surname");
+        bucket.makePersistent(person);
+        bucket.makePersistent(Arrays.asList(new Person("a", "b"), new Person("c", "d")));
+        assertEquals(4, bucket.size());
+
+        bucket.delete(person.getId());
+        bucket.delete(person.getId());
+        assertEquals(3, bucket.size());
+
+        bucket.setSizeCacheEnabled(false);
+        assertEquals(3, bucket.size());
+    }
+
+    @Test
+    public void updateAndDeleteMultipleRecords() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setBatchSize(2);
+
+        final List<Person> people = Arrays.asList(new Person("a", "b"), new Person("c", "d"), new Person("e", "f"));
+        bucket.makePersistent(people);
+
+        for (final Person person : people) {
+            person.put(Person.FORENAME, "updated");
+        }
+        bucket.update(people);
+
+        bucket.invalidateCache();
+        for (final Person person : people) {
+            assertEquals("updated", bucket.getObjectById(person.getId()).get(Person.FORENAME));
+        }
+
+        bucket.delete(Arrays.asList(people.get(0).getId(), people.get(1).getId(), 12345L));
+
+        assertFalse(bucket.contains(people.get(0).getId()));
+        assertFalse(bucket.contains(people.get(1).getId()));
+        assertTrue(bucket.contains(people.get(2).getId()));
+        assertEquals(1, bucket.size());
+    }
+
+    @Test
+    public void concurrentUpdatesAreAllWritten() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            people.add(new Person("forename" + i, "surname" + i));
+        }
+        bucket.makePersistent(people);
+
+        final List<Callable<Object>> updates = new ArrayList<>();
+        for (final Person person : people) {
+            updates.add(() -> {
+                person.put(Person.FORENAME, "updated");
+                bucket.update(person);
+                return bucket.getObjectIds();
+            });
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (final Future<Object> result : executor.invokeAll(updates)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        bucket.invalidateCache();
+        for (final Person person : people) {
+            assertEquals("updated", bucket.getObjectById(person.getId()).get(Person.FORENAME));
+        }
+    }
+
+    @Test
+    public void transientWriteFailuresAreRetried() throws Exception {
+
+        final NeoDbCypherBridge bridge = store.getBridge();
+        final RetryPolicy previous_policy = bridge.getRetryPolicy();
+        bridge.setRetryPolicy(new RetryPolicy(3, 1, 2.0, 10));
+
+        try {
+            final List<Boolean> attempts = new ArrayList<>();
+
+            final long answer = bridge.executeWrite((tx, retry) -> {
+                attempts.add(retry);
+                if (attempts.size() < 3) throw new TransientException("Neo.TransientError.Transaction.DeadlockDetected", "deadlock");
+                return tx.run("RETURN 42 AS answer").single().get("answer").asLong();
+            });
+
+            assertEquals(42, answer);
+            assertEquals(List.of(false, true, true), attempts);
+
+            attempts.clear();
+            assertThrows(TransientException.class, () -> bridge.executeWrite((tx, retry) -> {
+                attempts.add(retry);
+                throw new TransientException("Neo.TransientError.Transaction.DeadlockDetected", "deadlock");
+            }));
+            assertEquals(3, attempts.size());
+
+            attempts.clear();
+            assertThrows(BucketException.class, () -> bridge.executeWrite((tx, retry) -> {
+                attempts.add(retry);
+                throw new BucketException("not transient");
+            }));
+            assertEquals(1, attempts.size());
+
+        } finally {
+            bridge.setRetryPolicy(previous_policy);
+        }
+    }
+
+    @Test
+    public void batchUpdateContainingMissingRecordIsRejected() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person existing = new Person("a", "b");
+        bucket.makePersistent(existing);
+        existing.put(Person.FORENAME, "updated");
+
+        final Person missing = new Person("c", "d");
+
+        assertThrows(BucketException.class, () -> bucket.update(Arrays.asList(existing, missing)));
+
+        bucket.invalidateCache();
+        assertEquals("a", bucket.getObjectById(existing.getId()).get(Person.FORENAME));
+    }
+
+    @Test
+    public void metadataIsFixedWhenInitialised() {
+
+        final LXPMetaData metadata = new Reading().getMetaData();
+
+        assertEquals(5, metadata.getFieldCount());
+        assertEquals(Arrays.asList("SENSOR", "TIMESTAMP", "COUNT", "VALUE", "VALID"), metadata.getFieldNamesInSlotOrder());
+        assertEquals("VALUE", metadata.getFieldName(Reading.VALUE));
+        assertNull(metadata.getFieldName(5));
+        assertThrows(UnsupportedOperationException.class, () -> metadata.getFieldNamesToSlotNumbers().put("EXTRA", 5));
+    }
+
+    @Test
+    public void primitiveFieldsAreStoredAndRetrieved() throws Exception {
+
+        final IBucket<Reading> bucket = repository.makeBucket(NEW_BUCKET_NAME, Reading.class);
+
+        final Reading reading = new Reading();
+        reading.put(Reading.SENSOR, "thermometer");
+        reading.put(Reading.TIMESTAMP, 1234567890123L);
+        reading.put(Reading.COUNT, 7);
+        reading.put(Reading.VALUE, 21.5);
+        reading.put(Reading.VALID, true);
+
+        assertEquals(1234567890123L, reading.getLong(Reading.TIMESTAMP));
+        assertEquals(7, reading.getInt(Reading.COUNT));
+        assertEquals(21.5, reading.getDouble(Reading.VALUE));
+        assertTrue(reading.getBoolean(Reading.VALID));
+        assertEquals(7, reading.get(Reading.COUNT));
+        assertEquals(21.5, reading.get("VALUE"));
+
+        bucket.makePersistent(reading);
+        bucket.invalidateCache();
+
+        final Reading retrieved = bucket.getObjectById(reading.getId());
+
+        assertNotSame(reading, retrieved);
+        assertEquals("thermometer", retrieved.getString(Reading.SENSOR));
+        assertEquals(1234567890123L, retrieved.getLong(Reading.TIMESTAMP));
+        assertEquals(7, retrieved.getInt(Reading.COUNT));
+        assertEquals(7, retrieved.get(Reading.COUNT));
+        assertEquals(21.5, retrieved.getDouble(Reading.VALUE));
+        assertTrue(retrieved.getBoolean(Reading.VALID));
+
+        // A value not of the declared primitive type is held as it was supplied.
+        retrieved.put(Reading.VALUE, "unknown");
+        assertEquals("unknown", retrieved.get(Reading.VALUE));
+        assertThrows(RuntimeException.class, () -> retrieved.getDouble(Reading.VALUE));
+    }
+
+    @Test
+    public void fieldsAreSerialisedToDriverValues() {
+
+        final Reading reading = new Reading();
+        reading.put(Reading.SENSOR, "thermometer");
+        reading.put(Reading.TIMESTAMP, 1234567890123L);
+        reading.put(Reading.VALUE, 21.5);
+        reading.put(Reading.VALID, false);
+
+        final Map<String, Value> values = reading.serializeFieldsToValues();
+
+        assertEquals(Values.value("thermometer"), values.get("SENSOR"));
+        assertEquals(Values.value(1234567890123L), values.get("TIMESTAMP"));
+        assertEquals(Values.value(21.5), values.get("VALUE"));
+        assertEquals(Values.value(false), values.get("VALID"));
+        assertTrue(values.get("COUNT").isNull());
+
+        final LXPReference<Person> reference = new LXPReference<>("repo", "bucket", 42);
+        assertEquals("repo/bucket/42", reference.toString());
+        assertSame(reference.toString(), reference.toString());
+    }
+
+    @Test
+    public void referencesAreParsedAndImmutable() {
+
+        final LXPReference<Person> reference1 = new LXPReference<>("repo/bucket/42");
+        final LXPReference<Person> reference2 = new LXPReference<>(new String("repo"), new String("bucket"), 42);
+
+        assertEquals("repo", reference1.getRepositoryName());
+        assertEquals("bucket", reference1.getBucketName());
+        assertEquals(42, reference1.getObjectId());
+        assertEquals(42L, reference1.get(LXPReference.OID));
+        assertEquals("bucket", reference1.get("BUCKET"));
+
+        assertSame(reference1.getRepositoryName(), reference2.getRepositoryName());
+        assertSame(reference1.getBucketName(), reference2.getBucketName());
+        assertEquals(reference1, reference2);
+        assertEquals(reference1.hashCode(), reference2.hashCode());
+
+        assertThrows(RuntimeException.class, () -> new LXPReference<>("repo/bucket"));
+        assertThrows(RuntimeException.class, () -> new LXPReference<>("repo/bucket/oid"));
+        assertThrows(UnsupportedOperationException.class, () -> reference1.put(LXPReference.OID, 43L));
+        assertThrows(UnsupportedOperationException.class, () -> reference1.put(LXPReference.OID, (Object) 43L));
+        assertThrows(UnsupportedOperationException.class, () -> reference1.put("BUCKET", "other"));
+        assertThrows(RuntimeException.class, () -> reference1.getInt(LXPReference.OID));
+        assertEquals(42L, reference1.get(LXPReference.OID));
+        assertEquals("bucket", reference1.getString(LXPReference.BUCKET));
+
+        assertEquals(Map.of("REPOSITORY", "repo", "BUCKET", "bucket", "OID", 42L), reference1.serializeFieldsToMap());
+        assertEquals(Values.value(42L), reference1.serializeFieldsToValues().get("OID"));
+
+        final JSONStringer json = new JSONStringer();
+        reference1.serializeToJSON(json);
+        final JSONObject serialized = new JSONObject(json.toString());
+        assertEquals("repo", serialized.getString("REPOSITORY"));
+        assertEquals("bucket", serialized.getString("BUCKET"));
+        assertEquals(42L, serialized.getLong("OID"));
+    }
+
+    @Test
+    public void changedFieldsAreTracked() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person person = new Person("forename", "surname");
+        assertTrue(person.isDirty());
+
+        bucket.makePersistent(person);
+        assertFalse(person.isDirty());
+
+        person.put(Person.FORENAME, "another forename");
+        assertTrue(person.isDirty());
+        assertEquals(Collections.singletonMap("FORENAME", "another forename"), person.serializeDirtyFieldsToMap());
+
+        bucket.update(person);
+        assertFalse(person.isDirty());
+
+        bucket.invalidateCache();
+        assertFalse(bucket.getObjectById(person.getId()).isDirty());
+    }
+
+    @Test
+    public void updateWritesOnlyChangedFields() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person person = new Person("forename", "surname");
+        bucket.makePersistent(person);
+
+        bucket.invalidateCache();
+        final Person other_copy = bucket.getObjectById(person.getId());
+
+        person.put(Person.FORENAME, "another forename");
+        bucket.update(person);
+
+        other_copy.put(Person.SURNAME, "another surname");
+        bucket.update(other_copy);
+
+        bucket.invalidateCache();
+        final Person retrieved = bucket.getObjectById(person.getId());
+
+        assertEquals("another forename", retrieved.get(Person.FORENAME));
+        assertEquals("another surname", retrieved.get(Person.SURNAME));
+    }
+
+    @Test
+    public void updateWithRecordNotLoadedFromBucketReplacesAllFields() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person person = new Person("forename", "surname");
+        bucket.makePersistent(person);
+
+        // Made with an existing id rather than loaded from the bucket, so none of its fields is marked as changed.
+        final Person fresh = new Person(person.getId(), Map.of("FORENAME", "another forename"), null);
+        bucket.update(fresh);
+
+        bucket.invalidateCache();
+        final Person retrieved = bucket.getObjectById(person.getId());
+
+        assertEquals("another forename", retrieved.get(Person.FORENAME));
+        assertNull(retrieved.get(Person.SURNAME));
+    }
+
+    @Test
+    public void updateWritesUnchangedRecordLoadedFromAnotherBucket() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person person = new Person("forename", "surname");
+        bucket.makePersistent(person);
+
+        // Loaded through another handle on the same bucket, so the record belongs to a different bucket object.
+        final IBucket<Person> other_bucket = new Repository(store, repository.getName()).getBucket(NEW_BUCKET_NAME, Person.class);
+        final Person other_copy = other_bucket.getObjectById(person.getId());
+
+        person.put(Person.FORENAME, "another forename");
+        bucket.update(person);
+
+        // Written as a batch, which is checked in the same way as a single update.
+        bucket.update(List.of(other_copy));
+
+        bucket.invalidateCache();
+        assertEquals("forename", bucket.getObjectById(person.getId()).get(Person.FORENAME));
+    }
+
     @Test
     public void readFromBucketStream() throws Exception {
 
@@ -239,6 +754,64 @@ public class StoreTest extends CommonTest {
         assertEquals(count, births.size());
     }
 
+    @Test
+    public void readFromBucketStreamInChunks() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setFetchSize(3);
+
+        final int number_of_people = 10;
+        final Set<Person> births = new HashSet<>();
+
+        for (int i = 0; i < number_of_people; i++) {
+
+            Person birth = new Person("forename" + i, "surname" + i);
+            bucket.makePersistent(birth);
+            births.add(birth);
+        }
+
+        bucket.invalidateCache();
+
+        int count = 0;
+
+        for (Person p : bucket.getInputStream(false)) {
+            assertTrue(births.contains(p));
+            count++;
+        }
+
+        assertEquals(count, births.size());
+    }
+
+    @Test
+    public void closedBucketStreamsDoNotHoldConnections() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setFetchSize(2);
+
+        for (int i = 0; i < 6; i++) {
+            bucket.makePersistent(new Person("forename" + i, "surname" + i));
+        }
+
+        // More than the driver's default connection pool size.
+        for (int i = 0; i < 150; i++) {
+            try (IInputStream<Person> stream = bucket.getInputStream()) {
+                assertNotNull(stream.iterator().next());
+            }
+        }
+
+        int count = 0;
+        for (Person ignored : bucket.getInputStream()) count++;
+
+        assertEquals(6, count);
+
+        final IInputStream<Person> stream = bucket.getInputStream();
+        final Iterator<Person> iterator = stream.iterator();
+        iterator.next();
+        stream.close();
+
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+    }
+
     @Test
     public void writeToBucketStream() throws Exception {
 
@@ -265,6 +838,113 @@ public class StoreTest extends CommonTest {
         assertEquals(number_of_people, bucket.size());
     }
 
+    @Test
+    public void writeBatchToBucket() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setBatchSize(4);
+
+        final int number_of_people = 10;
+        final List<Person> people = new ArrayList<>();
+
+        for (int i = 0; i < number_of_people; i++) {
+            people.add(new Person("forename" + i, "surname" + i));
+        }
+
+        bucket.getOutputStream().addAll(people);
+
+        for (Person person : people) {
+            assertTrue(bucket.contains(person.getId()));
+        }
+
+        assertEquals(number_of_people, bucket.size());
+    }
+
+    @Test
+    public void batchContainingExistingRecordIsRejected() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person existing = new Person("forename", "surname");
+        bucket.makePersistent(existing);
+
+        final Person fresh = new Person("another forename", "another surname");
+
+        assertThrows(BucketException.class, () -> bucket.makePersistent(Arrays.asList(fresh, existing)));
+        assertFalse(bucket.contains(fresh.getId()));
+        assertEquals(1, bucket.size());
+    }
+
+    @Test
+    public void writeToBufferedBucketStream() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setBatchSize(3);
+
+        final int number_of_people = 10;
+        final Set<Person> birth_set = new HashSet<>();
+
+        try (IOutputStream<Person> out_stream = bucket.getBufferedOutputStream(4)) {
+
+            for (int i = 0; i < number_of_people; i++) {
+
+                Person birth = new Person("forename" + i, "surname" + i);
+                out_stream.add(birth);
+                birth_set.add(birth);
+            }
+        }
+
+        for (Person birth : birth_set) {
+            assertTrue(bucket.contains(birth.getId()));
+        }
+
+        assertEquals(number_of_people, bucket.size());
+    }
+
+    @Test
+    public void bufferedBucketStreamReportsFailure() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+
+        final Person existing = new Person("forename", "surname");
+        bucket.makePersistent(existing);
+
+        final IOutputStream<Person> out_stream = bucket.getBufferedOutputStream(4);
+        out_stream.add(existing);
+
+        assertThrows(BucketException.class, out_stream::flush);
+        assertThrows(BucketException.class, out_stream::close);
+    }
+
+    @Test
+    public void abandonedBufferedBucketStreamIsWrittenAndReleasesWriter() throws Exception {
+
+        final IBucket<Person> bucket = repository.makeBucket(NEW_BUCKET_NAME, Person.class);
+        bucket.setBatchSize(3);
+
+        final int number_of_people = 10;
+
+        final IOutputStream<Person> out_stream = bucket.getBufferedOutputStream(4);
+        for (int i = 0; i < number_of_people; i++) {
+            out_stream.add(new Person("forename" + i, "surname" + i));
+        }
+
+        // The stream is never closed, but the writer still writes the queued records and then exits.
+        final long deadline = System.currentTimeMillis() + 10000;
+        while ((bucket.size() < number_of_people || writerIsRunning(bucket)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(number_of_people, bucket.size());
+        assertFalse(writerIsRunning(bucket));
+    }
+
+    private static boolean writerIsRunning(final IBucket<?> bucket) {
+
+        final String writer_name = "storr-writer-" + bucket.getName();
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals(writer_name));
+    }
+
     @Test
     public void consistentBucketType() throws Exception {
 
@@ -331,4 +1011,11 @@ public class StoreTest extends CommonTest {
             assertFalse(Repository.bucketNameIsLegal(name));
         }
     }
+
+    private boolean recordExists(final long id) {
+
+        try (final Session session = store.getBridge().getNewSession()) {
+            return session.run("MATCH (l:STORR_LXP {STORR_ID: $id}) RETURN count(l) AS found", Values.parameters("id", id)).single().get("found").asLong() > 0;
+        }
+    }
 }
@@ -21,12 +21,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.BucketException;
 import uk.ac.standrews.cs.neoStorr.impl.exceptions.RepositoryException;
+import uk.ac.standrews.cs.neoStorr.impl.testData.Car;
 import uk.ac.standrews.cs.neoStorr.impl.testData.Person;
 import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransaction;
+import uk.ac.standrews.cs.neoStorr.impl.transaction.interfaces.ITransactionScope;
 import uk.ac.standrews.cs.neoStorr.interfaces.IBucket;
+import uk.ac.standrews.cs.neoStorr.interfaces.IOutputStream;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -67,6 +74,15 @@ public class TransactionsTest extends CommonTest {
     // others:
 
     // createAndUpdateInSameTransaction
+    // updateValueContainingQuotes
+    // batchUpdateWithRollback
+    // transactionBoundToAnotherThread
+    // transactionBoundToSeveralThreads
+    // beginningATransactionLeavesAutoCommitEnabled
+    // autoCommitIsPerThread
+    // bufferedStreamCannotBeUsedInTransaction
+    // rejectedBatchOfSeveralClassesWritesNothing
+    // cachedSizeIsCountedAgainAfterTransaction
 
     private static final String NEW_BUCKET_NAME = "BUCKET_23512673";
 
@@ -297,6 +313,210 @@ public class TransactionsTest extends CommonTest {
         assertThatPersistentRecordsContain("Fred");
     }
 
+    @Test
+    public void updateValueContainingQuotes() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(true);
+        makePersistentPerson();
+
+        people.get(0).put(Person.FORENAME, "Fred \"Freddie\" O'Brien");
+        bucket.update(people.get(0));
+        bucket.invalidateCache();
+
+        assertThatPersistentRecordsContain("Fred \"Freddie\" O'Brien");
+    }
+
+    @Test
+    public void batchUpdateWithRollback() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(true);
+        makePersistentPeople();
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        people.get(0).put(Person.FORENAME, "Fred");
+        people.get(1).put(Person.FORENAME, "Jean");
+        bucket.update(people);
+
+        transaction.rollback();
+
+        assertThatInMemoryRecordsContain("John", "Anna", "Rachel");
+        assertThatPersistentRecordsContain("John", "Anna", "Rachel");
+    }
+
+    @Test
+    public void rejectedBatchOfSeveralClassesWritesNothing() throws Exception {
+
+        final IBucket<LXP> untyped_bucket = repository.getBucket(BUCKET_NAME);
+
+        store.getTransactionManager().setAutoCommit(true);
+        final Car existing = new Car();
+        existing.put(Car.MODEL, "model");
+        untyped_bucket.makePersistent(existing);
+        untyped_bucket.invalidateCache();
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        final Person fresh = new Person("forename", "surname");
+        assertThrows(BucketException.class, () -> untyped_bucket.makePersistent(List.of(fresh, existing)));
+
+        transaction.commit();
+
+        assertFalse(untyped_bucket.contains(fresh.getId()));
+        assertNull(fresh.getBucket());
+
+        store.getTransactionManager().setAutoCommit(true);
+        final Car another = new Car();
+        untyped_bucket.makePersistent(List.of(fresh, another));
+
+        assertTrue(untyped_bucket.contains(fresh.getId()));
+        assertTrue(untyped_bucket.contains(another.getId()));
+    }
+
+    @Test
+    public void transactionBoundToAnotherThread() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            final ExecutionException unbound = assertThrows(ExecutionException.class, () -> executor.submit(() -> {
+                store.getTransactionManager().setAutoCommit(false);
+                makePersistentPerson();
+                return null;
+            }).get());
+            assertInstanceOf(BucketException.class, unbound.getCause());
+
+            executor.submit(() -> {
+                try (ITransactionScope ignored = transaction.bind()) {
+                    makePersistentPerson();
+                }
+                return null;
+            }).get();
+        }
+
+        assertSame(transaction, store.getTransactionManager().getCurrentTransaction());
+        transaction.commit();
+
+        assertNull(store.getTransactionManager().getTransaction(transaction.getId()));
+        assertNull(store.getTransactionManager().getCurrentTransaction());
+        assertThatPersistentRecordsContain("John");
+    }
+
+    @Test
+    public void transactionBoundToSeveralThreads() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        final List<Person> created = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            created.add(new Person("forename" + i, "surname" + i));
+        }
+
+        final List<Future<Object>> writes = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (final Person person : created) {
+                writes.add(executor.submit(() -> {
+                    try (ITransactionScope ignored = transaction.bind()) {
+                        bucket.makePersistent(person);
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        for (final Future<Object> write : writes) {
+            write.get();
+        }
+
+        transaction.commit();
+        bucket.invalidateCache();
+
+        for (final Person person : created) {
+            assertEquals(person.get(Person.FORENAME), bucket.getObjectById(person.getId()).get(Person.FORENAME));
+        }
+    }
+
+    @Test
+    public void beginningATransactionLeavesAutoCommitEnabled() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(true);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        assertTrue(store.getTransactionManager().isAutoCommitEnabled());
+        makePersistentPerson();
+
+        transaction.rollback();
+        bucket.invalidateCache();
+
+        assertThatPersistentRecordsContain("John");
+    }
+
+    @Test
+    public void bufferedStreamCannotBeUsedInTransaction() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        try (IOutputStream<Person> out_stream = bucket.getBufferedOutputStream(4)) {
+            assertThrows(BucketException.class, () -> out_stream.add(new Person("John", "Smith")));
+        }
+    }
+
+    @Test
+    public void cachedSizeIsCountedAgainAfterTransaction() throws Exception {
+
+        bucket.setSizeCacheEnabled(true);
+        makePersistentPerson();
+        assertEquals(1, bucket.size());
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        makePersistentPerson();
+
+        // Counted outside the transaction, so not including the uncommitted record.
+        assertEquals(1, bucket.size());
+        transaction.commit();
+        assertEquals(2, bucket.size());
+
+        transaction = store.getTransactionManager().beginTransaction();
+        makePersistentPerson();
+        transaction.rollback();
+        assertEquals(2, bucket.size());
+    }
+
+    @Test
+    public void autoCommitIsPerThread() throws Exception {
+
+        store.getTransactionManager().setAutoCommit(false);
+        transaction = store.getTransactionManager().beginTransaction();
+
+        makePersistentPerson();
+
+        final Person other = new Person("Anna", "Jones");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> {
+                assertTrue(store.getTransactionManager().isAutoCommitEnabled());
+                bucket.makePersistent(other);
+                return null;
+            }).get();
+        }
+
+        assertFalse(store.getTransactionManager().isAutoCommitEnabled());
+        transaction.rollback();
+        bucket.invalidateCache();
+
+        assertEquals("Anna", bucket.getObjectById(other.getId()).get(Person.FORENAME));
+        assertThrows(BucketException.class, () -> bucket.getObjectById(people.get(0).getId()));
+    }
+
     private void makePersistentPerson() throws BucketException {
 
         Person person = new Person("John", "Smith");